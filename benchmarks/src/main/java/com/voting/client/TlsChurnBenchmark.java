@@ -0,0 +1,139 @@
+package com.voting.client;
+
+import com.voting.common.Cpf;
+import com.voting.common.Tls;
+import com.voting.common.Vote;
+import com.voting.common.VoteResult;
+import com.voting.common.VoteStatus;
+import com.voting.common.WireProtocol;
+import com.voting.server.Server;
+import com.voting.server.ServerConfig;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Votos por segundo de um terminal que conecta, vota e desconecta a cada eleitor, com o
+ * servidor no mesmo processo.
+ *
+ * {@code PLAIN} é o socket sem criptografia; {@code TLS_FULL} invalida a sessão depois de
+ * cada voto, então toda conexão paga o handshake completo; {@code TLS_RESUMED} reaproveita
+ * a sessão pelo ticket, como o {@link ClientGUI} faz com o seu {@link SSLContext} único.
+ * O certificado é autoassinado e gerado com o {@code keytool} do próprio JDK numa pasta temporária.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TlsChurnBenchmark {
+    private static final String HOST = "localhost";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    public enum Transport { PLAIN, TLS_FULL, TLS_RESUMED }
+
+    @Param({"PLAIN", "TLS_FULL", "TLS_RESUMED"})
+    public Transport transport;
+
+    private Server server;
+    private Path certDir;
+    private SSLContext tls;
+    private int port;
+    private PrintStream originalOut;
+    // 9 primeiros dígitos do próximo CPF (sem começar em 000.000.000, que é inválido);
+    // o ledger só cresce ao longo do trial
+    private long nextCpf;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException, InterruptedException {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        ServerConfig config = new ServerConfig();
+        config.setPort(port = freePort());
+        config.setJournalFile(null);
+        config.setSnapshotIntervalSeconds(0);
+        config.setVoteLogPerSecond(0);
+        if (transport != Transport.PLAIN) {
+            certDir = Files.createTempDirectory("tls-bench");
+            Path keyStore = certDir.resolve("server.p12");
+            Path trustStore = certDir.resolve("terminal.p12");
+            Path cert = certDir.resolve("server.cer");
+            keytool("-genkeypair", "-alias", "voting-server", "-keyalg", "EC", "-groupname", "secp256r1",
+                    "-validity", "1", "-dname", "CN=" + HOST, "-ext", "SAN=dns:" + HOST + ",ip:127.0.0.1",
+                    "-storetype", "PKCS12", "-keystore", keyStore.toString(), "-storepass", new String(PASSWORD));
+            keytool("-exportcert", "-alias", "voting-server", "-keystore", keyStore.toString(),
+                    "-storepass", new String(PASSWORD), "-file", cert.toString());
+            keytool("-importcert", "-noprompt", "-alias", "voting-server", "-file", cert.toString(),
+                    "-storetype", "PKCS12", "-keystore", trustStore.toString(), "-storepass", new String(PASSWORD));
+            config.setTlsKeyStore(keyStore.toString());
+            tls = Tls.clientContext(trustStore, PASSWORD);
+        }
+
+        server = new Server(config);
+        new Thread(server, "bench-server").start();
+        awaitListening();
+        nextCpf = 100_000_000L;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stopServer();
+        System.setOut(originalOut);
+        if (certDir != null) {
+            try (var files = Files.list(certDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(certDir);
+            certDir = null;
+        }
+    }
+
+    @Benchmark
+    public VoteResult connectVoteDisconnect() throws IOException {
+        try (VotingSession session = VotingSession.open(HOST, port, WireProtocol.DEFAULT_ELECTION, tls)) {
+            VoteResult result = session.submit(new Vote(Cpf.format(Cpf.withCheckDigits(nextCpf++)), "Java"));
+            if (result.getStatus() != VoteStatus.SUCCESS) throw new IllegalStateException(result.getMessage());
+            // Sem a sessão no cache do cliente, a próxima conexão não tem o que retomar
+            if (transport == Transport.TLS_FULL) session.getTlsSession().invalidate();
+            return result;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    private void awaitListening() throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket(HOST, port).close();
+                return;
+            } catch (IOException e) {
+                if (attempt == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static void keytool(String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (process.waitFor() != 0) throw new IOException("keytool failed: " + String.join(" ", args));
+    }
+}
@@ -0,0 +1,50 @@
+package com.voting.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo da validação de CPF feita pelo terminal antes de cada voto e pelo servidor
+ * ao receber o voto, comparada com a validação anterior por expressões regulares.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CpfValidationBenchmark {
+
+    // Digitado com máscara, só dígitos, e um inválido por dígitos repetidos
+    @Param({"529.982.247-25", "52998224725", "111.111.111-11"})
+    public String cpf;
+
+    @Benchmark
+    public long parse() {
+        return Cpf.parse(cpf);
+    }
+
+    @Benchmark
+    public boolean regexBaseline() {
+        return isCpfValidWithRegex(cpf);
+    }
+
+    /**
+     * Validação que o terminal usava antes de {@link Cpf}.
+     */
+    private static boolean isCpfValidWithRegex(String cpf) {
+        String cleanCpf = cpf.replaceAll("[^\\d]", "");
+        if (cleanCpf.length() != 11 || cleanCpf.matches("(\\d)\\1{10}")) return false;
+        int sum = 0;
+        for (int i = 0; i < 9; i++) sum += (cleanCpf.charAt(i) - '0') * (10 - i);
+        int r = (sum * 10) % 11;
+        if (r == 10) r = 0;
+        if (r != (cleanCpf.charAt(9) - '0')) return false;
+        sum = 0;
+        for (int i = 0; i < 10; i++) sum += (cleanCpf.charAt(i) - '0') * (11 - i);
+        r = (sum * 10) % 11;
+        if (r == 10) r = 0;
+        return r == (cleanCpf.charAt(10) - '0');
+    }
+}
@@ -0,0 +1,66 @@
+package com.voting.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida e volta (codificar + decodificar) de Vote e ElectionData: serialização Java,
+ * usada pelos clientes antigos, contra o protocolo binário com frames.
+ * A serialização Java cria os streams a cada mensagem, como numa conexão nova.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+    private final ElectionData electionData = new ElectionData("Qual a melhor linguagem de programacao?",
+            Arrays.asList("Java", "Python", "JavaScript", "C++"));
+    private final Vote vote = new Vote("52998224725", "Python");
+
+    @Benchmark
+    public Object voteJavaSerialization() throws IOException, ClassNotFoundException {
+        return javaRoundTrip(vote);
+    }
+
+    @Benchmark
+    public Object voteBinaryCodec() throws IOException {
+        byte[] frame = frame(WireProtocol.MSG_VOTE, VoteCodec.encode(vote, electionData));
+        return VoteCodec.decode(readFrame(frame), electionData);
+    }
+
+    @Benchmark
+    public Object electionDataJavaSerialization() throws IOException, ClassNotFoundException {
+        return javaRoundTrip(electionData);
+    }
+
+    @Benchmark
+    public Object electionDataBinaryCodec() throws IOException {
+        byte[] frame = frame(WireProtocol.MSG_ELECTION_DATA, ElectionDataCodec.encode(electionData));
+        return ElectionDataCodec.decode(readFrame(frame));
+    }
+
+    private static Object javaRoundTrip(Object message) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] frame(byte type, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 5);
+        WireProtocol.writeFrame(new DataOutputStream(bytes), type, payload);
+        return bytes.toByteArray();
+    }
+
+    private static WireProtocol.Frame readFrame(byte[] frame) throws IOException {
+        return WireProtocol.readFrame(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+}
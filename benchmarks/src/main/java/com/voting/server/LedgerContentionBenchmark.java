@@ -0,0 +1,130 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+import com.voting.common.Vote;
+import com.voting.common.VoteStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Todas as threads votando com os mesmos CPFs no {@link VoteLedger}, para o CPF ser
+ * disputado de verdade, e uma conferência no fim de cada iteração: nenhum CPF aceito
+ * duas vezes, nenhum CPF tentado ficou sem voto, e a soma dos contadores é igual ao
+ * número de votos aceitos e ao de CPFs no ledger. Se alguma falhar, o benchmark para
+ * com erro em vez de mostrar o número.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class LedgerContentionBenchmark {
+    private static final List<String> OPTIONS = Arrays.asList("Java", "Python", "JavaScript", "C++");
+    // CPFs disputados em cada iteração; todas as threads percorrem a mesma sequência
+    private static final int CPF_POOL = 1 << 20;
+    private static final int BATCH_SIZE = 50;
+
+    private VoteLedger ledger;
+    // Por posição do pool: quantas vezes o CPF foi aceito e se alguém tentou votar com ele
+    private AtomicIntegerArray accepted;
+    private AtomicIntegerArray attempted;
+    private String[] cpfs;
+
+    @Setup(Level.Trial)
+    public void buildCpfs() {
+        cpfs = new String[CPF_POOL];
+        for (int i = 0; i < CPF_POOL; i++) cpfs[i] = Cpf.format(Cpf.withCheckDigits(100_000_000L + i));
+    }
+
+    @Setup(Level.Iteration)
+    public void newLedger() {
+        ledger = new VoteLedger(OPTIONS);
+        ledger.setAuditFeed(false);
+        accepted = new AtomicIntegerArray(CPF_POOL);
+        attempted = new AtomicIntegerArray(CPF_POOL);
+    }
+
+    @TearDown(Level.Iteration)
+    public void check() {
+        long acceptedVotes = 0;
+        long attemptedCpfs = 0;
+        for (int i = 0; i < CPF_POOL; i++) {
+            int times = accepted.get(i);
+            if (times > 1) throw new IllegalStateException("CPF " + cpfs[i] + " accepted " + times + " times.");
+            acceptedVotes += times;
+            attemptedCpfs += attempted.get(i);
+        }
+        long counted = 0;
+        for (long count : ledger.counts()) counted += count;
+
+        if (acceptedVotes != attemptedCpfs) {
+            throw new IllegalStateException(attemptedCpfs + " distinct CPFs voted but " + acceptedVotes + " votes accepted.");
+        }
+        if (counted != acceptedVotes || ledger.totalVotes() != acceptedVotes) {
+            throw new IllegalStateException(acceptedVotes + " votes accepted but counts sum to " + counted
+                    + " and the ledger has " + ledger.totalVotes() + " CPFs.");
+        }
+    }
+
+    /**
+     * Posição de cada thread no pool; a volta recomeça do início, só com recusas.
+     */
+    @State(Scope.Thread)
+    public static class Voter {
+        private int next;
+        private int option;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = (next + 1) & (CPF_POOL - 1);
+            return index;
+        }
+
+        int nextOption() {
+            option = (option + 1) & 3;
+            return option;
+        }
+    }
+
+    @Benchmark
+    public VoteStatus register(Voter voter) {
+        int index = voter.nextIndex();
+        attempted.set(index, 1);
+        try {
+            ledger.register(new Vote(cpfs[index], OPTIONS.get(voter.nextOption()), voter.option));
+            accepted.incrementAndGet(index);
+            return VoteStatus.SUCCESS;
+        } catch (VoteRejectedException e) {
+            return e.getStatus();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public VoteStatus[] registerBatch(Voter voter) {
+        int[] indexes = new int[BATCH_SIZE];
+        List<Vote> votes = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            indexes[i] = voter.nextIndex();
+            attempted.set(indexes[i], 1);
+            votes.add(new Vote(cpfs[indexes[i]], OPTIONS.get(voter.nextOption()), voter.option));
+        }
+        VoteStatus[] statuses = ledger.registerBatch(votes, new ArrayList<>(BATCH_SIZE));
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (statuses[i] == VoteStatus.SUCCESS) accepted.incrementAndGet(indexes[i]);
+        }
+        return statuses;
+    }
+}
@@ -0,0 +1,116 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+import com.voting.common.Vote;
+import com.voting.common.VoteResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Custo de {@link Server#processVote} com 1, 4 e todas as threads disputando o ledger.
+ *
+ * Cada iteração usa um servidor novo, para o ledger não crescer sem limite.
+ * Com {@code journal=true} cada voto espera o fsync do group commit, como em produção.
+ * O println de cada voto continua sendo medido, mas vai para um stream nulo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessVoteBenchmark {
+    private static final String[] OPTIONS = {"Java", "Python", "JavaScript", "C++"};
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private Server server;
+    private Path journalDir;
+    private PrintStream originalOut;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void startServer() throws IOException {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        ServerConfig config = new ServerConfig();
+        config.setSnapshotIntervalSeconds(0);
+        if (journal) {
+            journalDir = Files.createTempDirectory("vote-bench");
+            config.setJournalFile(journalDir.resolve("votes.journal").toString());
+        } else {
+            config.setJournalFile(null);
+        }
+        server = new Server(null, config);
+        threadIds.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopServer() throws IOException {
+        server.stopServer();
+        System.setOut(originalOut);
+        if (journalDir != null) {
+            try (var files = Files.list(journalDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(journalDir);
+            journalDir = null;
+        }
+    }
+
+    /**
+     * Cada thread vota com sua própria faixa de CPFs, então todo voto é novo.
+     */
+    @State(Scope.Thread)
+    public static class Voter {
+        // 9 primeiros dígitos do próximo CPF; os verificadores são calculados em next()
+        private long nextCpf;
+        private int option;
+
+        @Setup(Level.Iteration)
+        public void reset(ProcessVoteBenchmark benchmark) {
+            nextCpf = benchmark.threadIds.getAndIncrement() * 10_000_000L;
+        }
+
+        Vote next() {
+            option = (option + 1) & 3;
+            return new Vote(Cpf.format(Cpf.withCheckDigits(nextCpf++)), OPTIONS[option]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public VoteResult processVote1Thread(Voter voter) {
+        return server.processVote(voter.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public VoteResult processVote4Threads(Voter voter) {
+        return server.processVote(voter.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public VoteResult processVoteMaxThreads(Voter voter) {
+        return server.processVote(voter.next());
+    }
+
+    /**
+     * Todas as threads repetindo o mesmo CPF: só o caminho de recusa (ALREADY_VOTED).
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public VoteResult duplicateVoteMaxThreads() {
+        return server.processVote(new Vote("52998224725", "Java"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.voting.client;
+
+import com.voting.common.BatchResult;
+import com.voting.common.Vote;
+import com.voting.common.VoteStatus;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Envia votos coletados offline (quiosques) em lotes, com pipeline:
+ * até {@code maxInFlight} lotes podem aguardar resposta ao mesmo tempo,
+ * então o próximo lote sai antes de a resposta do anterior chegar.
+ */
+public class BatchUploader implements Closeable {
+    private final VotingSession session;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    // Lotes enviados e ainda sem resposta, na ordem de envio (a mesma das respostas)
+    private final Queue<PendingBatch> pending = new ConcurrentLinkedQueue<>();
+    private final Thread replyReader;
+    private volatile boolean closing;
+    // Erro que derrubou a leitura das respostas; depois dele nenhum lote novo é aceito (protegido por pending)
+    private IOException failure;
+
+    public BatchUploader(VotingSession session, int maxInFlight) {
+        this.session = session;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.replyReader = new Thread(this::readReplies, "batch-reply-reader");
+        replyReader.setDaemon(true);
+        replyReader.start();
+    }
+
+    /**
+     * Envia o lote e devolve imediatamente; bloqueia apenas se já houver
+     * {@code maxInFlight} lotes sem resposta.
+     */
+    public CompletableFuture<BatchResult> submit(List<Vote> votes) throws IOException, InterruptedException {
+        inFlight.acquire();
+        PendingBatch[] batch = new PendingBatch[1];
+        // O envio e o registro na fila precisam ter a mesma ordem
+        synchronized (pending) {
+            try {
+                if (failure != null) throw new IOException("Batch upload interrupted: " + failure.getMessage(), failure);
+                // Registrado antes do envio: a resposta pode chegar antes de sendBatch voltar
+                session.sendBatch(votes, requestId -> {
+                    batch[0] = new PendingBatch(requestId);
+                    pending.add(batch[0]);
+                });
+            } catch (IOException e) {
+                // Se a leitura já falhou e esvaziou a fila, a vaga do lote já foi devolvida
+                if (batch[0] == null || pending.remove(batch[0])) inFlight.release();
+                throw e;
+            }
+        }
+        return batch[0].future;
+    }
+
+    /**
+     * Espera a resposta de todos os lotes enviados.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private void readReplies() {
+        try {
+            while (true) {
+                BatchResult result = session.readBatchResult();
+                PendingBatch batch = pending.poll();
+                if (batch == null) {
+                    throw new StreamCorruptedException("Unexpected reply for request " + result.getRequestId() + ".");
+                }
+                VotingSession.checkRequestId(result.getRequestId(), batch.requestId);
+                batch.future.complete(result);
+                inFlight.release();
+            }
+        } catch (IOException e) {
+            if (!closing) System.err.println("Batch upload interrupted: " + e.getMessage());
+            // Sob o lock de submit: nenhum lote entra na fila depois da limpeza
+            synchronized (pending) {
+                failure = e;
+                PendingBatch batch;
+                while ((batch = pending.poll()) != null) {
+                    batch.future.completeExceptionally(e);
+                    inFlight.release();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        session.close();
+    }
+
+    private static final class PendingBatch {
+        final int requestId;
+        final CompletableFuture<BatchResult> future = new CompletableFuture<>();
+
+        PendingBatch(int requestId) {
+            this.requestId = requestId;
+        }
+    }
+
+    /**
+     * Envia um arquivo de votos de quiosque (uma linha "cpf;opção" por voto).
+     * Uso: BatchUploader host porta arquivo [tamanhoDoLote] [lotesEmPipeline]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: BatchUploader <host> <port> <file> [batchSize] [maxInFlight]");
+            System.exit(1);
+        }
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+        Map<VoteStatus, Integer> totals = new EnumMap<>(VoteStatus.class);
+        List<CompletableFuture<BatchResult>> results = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try (BatchUploader uploader = new BatchUploader(VotingSession.open(args[0], Integer.parseInt(args[1])), maxInFlight);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[2]), StandardCharsets.UTF_8))) {
+            List<Vote> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(';');
+                if (separator < 0) continue;
+                batch.add(new Vote(line.substring(0, separator).trim(), line.substring(separator + 1).trim()));
+                if (batch.size() == batchSize) {
+                    results.add(uploader.submit(batch));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) results.add(uploader.submit(batch));
+            uploader.awaitCompletion();
+        }
+
+        for (CompletableFuture<BatchResult> future : results) {
+            BatchResult result = future.join();
+            for (int i = 0; i < result.size(); i++) {
+                totals.merge(result.getStatus(i), 1, Integer::sum);
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Uploaded " + results.size() + " batches in " + elapsedMillis + " ms: " + totals);
+    }
+}
@@ -1,13 +1,14 @@
 package com.voting.client;
 
-import com.voting.common.ElectionData;
-import com.voting.common.Vote;
+import com.voting.common.*;
 
+import javax.net.ssl.SSLContext;
 import javax.swing.*;
 import javax.swing.text.MaskFormatter;
 import java.awt.*;
 import java.io.*;
-import java.net.Socket;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.text.ParseException;
 
 /**
@@ -15,20 +16,43 @@ import java.text.ParseException;
  * Modificado: Campo de CPF só habilita após conexão.
  */
 public class ClientGUI extends JFrame {
-    private JTextField serverIpField, serverPortField;
+    private JTextField serverIpField, serverPortField, electionField;
     private JFormattedTextField cpfField; 
     private JButton connectButton, voteButton;
     private JPanel optionsPanel;
     private ButtonGroup optionsGroup;
     private JLabel questionLabel;
+    private JLabel spoolLabel;
     
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
-    private Socket socket;
+    // Uma conexão por terminal, reaproveitada por todos os eleitores
+    private VotingSession session;
+
+    // Sem resposta neste tempo, o voto vai para a fila local e o eleitor é liberado
+    private static final int REPLY_TIMEOUT_MS = 5_000;
+
+    // Cédula lida ao conectar; continua valendo enquanto o servidor estiver fora do ar
+    private ElectionData electionData;
+    private String host, electionId;
+    private int port;
+
+    // Votos que o servidor ainda não confirmou, guardados em disco e reenviados em segundo plano
+    private VoteSpool spool;
+    private final SecureRandom keyGenerator = new SecureRandom();
+
+    // Criado uma vez na partida; a reconexão ao mesmo servidor retoma a sessão TLS guardada nele
+    private final SSLContext tls;
 
     public ClientGUI() {
-        setTitle("Distributed Voting Client - v1.30");
-        setSize(500, 450);
+        this(null);
+    }
+
+    /**
+     * @param tls contexto TLS do terminal, ou null para falar em texto puro
+     */
+    public ClientGUI(SSLContext tls) {
+        this.tls = tls;
+        setTitle("Distributed Voting Client - v1.30" + (tls == null ? "" : " (TLS)"));
+        setSize(620, 450);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
 
@@ -37,11 +61,14 @@ public class ClientGUI extends JFrame {
         connectionPanel.setBorder(BorderFactory.createTitledBorder("Connection"));
         serverIpField = new JTextField("127.0.0.1", 15);
         serverPortField = new JTextField("12345", 5);
+        electionField = new JTextField(WireProtocol.DEFAULT_ELECTION, 8);
         connectButton = new JButton("Connect");
         connectionPanel.add(new JLabel("Server IP:"));
         connectionPanel.add(serverIpField);
         connectionPanel.add(new JLabel("Port:"));
         connectionPanel.add(serverPortField);
+        connectionPanel.add(new JLabel("Election:"));
+        connectionPanel.add(electionField);
         connectionPanel.add(connectButton);
         add(connectionPanel, BorderLayout.NORTH);
 
@@ -83,6 +110,9 @@ public class ClientGUI extends JFrame {
         votingPanel.add(cpfPanel);
         votingPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         votingPanel.add(voteButton);
+        votingPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+        spoolLabel = new JLabel(" ");
+        votingPanel.add(spoolLabel);
         
         add(votingPanel, BorderLayout.CENTER);
         
@@ -104,7 +134,9 @@ public class ClientGUI extends JFrame {
                 "Como Votar no Sistema:\n\n" +
                 "1. Conecte-se ao servidor (IP e Porta) e clique em 'Connect'.\n" +
                 "2. O campo de CPF será liberado.\n" +
-                "3. Digite seu CPF, escolha a opção e clique em 'Cast Vote'.",
+                "3. Digite seu CPF, escolha a opção e clique em 'Cast Vote'.\n" +
+                "4. O terminal continua conectado para o próximo eleitor.\n" +
+                "5. Se o servidor cair, o voto fica guardado no terminal e é enviado sozinho quando ele voltar.",
                 "Ajuda", 
                 JOptionPane.INFORMATION_MESSAGE));
         
@@ -125,18 +157,22 @@ public class ClientGUI extends JFrame {
     
     private void connectToServer() {
         try {
-            socket = new Socket(serverIpField.getText(), Integer.parseInt(serverPortField.getText()));
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
-            
-            ElectionData electionData = (ElectionData) in.readObject();
+            host = serverIpField.getText();
+            port = Integer.parseInt(serverPortField.getText());
+            electionId = electionField.getText().trim();
+            session = VotingSession.open(host, port, electionId, tls);
+            session.setReplyTimeout(REPLY_TIMEOUT_MS);
+            electionData = session.getElectionData();
+            // Também reenvia o que sobrou de uma execução anterior deste terminal
+            spool = new VoteSpool(Paths.get("votes-" + electionId + ".spool"), host, port, electionId, tls, new SpoolListener());
             
             questionLabel.setText("<html><center>" + electionData.getQuestion() + "</center></html>");
             optionsPanel.removeAll();
             optionsGroup = new ButtonGroup();
-            for(String option : electionData.getOptions()) {
-                JRadioButton radioButton = new JRadioButton(option);
-                radioButton.setActionCommand(option);
+            for (int i = 0; i < electionData.getOptions().size(); i++) {
+                JRadioButton radioButton = new JRadioButton(electionData.getOptions().get(i));
+                // A posição na cédula vai no voto; o servidor não precisa procurar o texto
+                radioButton.setActionCommand(Integer.toString(i));
                 optionsGroup.add(radioButton);
                 optionsPanel.add(radioButton);
             }
@@ -144,6 +180,7 @@ public class ClientGUI extends JFrame {
             // --- MODIFICAÇÃO AQUI: Habilita tudo após conectar ---
             connectButton.setEnabled(false); // Trava o botão de conectar
             serverIpField.setEditable(false); // Trava o IP
+            electionField.setEditable(false);
             
             voteButton.setEnabled(true); // Libera o botão de voto
             cpfField.setEnabled(true);   // Libera o campo de CPF
@@ -153,16 +190,17 @@ public class ClientGUI extends JFrame {
 
             revalidate();
             repaint();
+        } catch (ServerBusyException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Servidor Ocupado", JOptionPane.WARNING_MESSAGE);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Failed to connect: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
     private void castVote() {
-        String cpf = cpfField.getText();
-        
         // Validação ocorre aqui, no momento do clique
-        if (!isCpfValid(cpf)) {
+        long cpf = Cpf.parse(cpfField.getText());
+        if (cpf == Cpf.INVALID) {
             JOptionPane.showMessageDialog(this, "CPF inválido ou incompleto.\nVerifique os dígitos.", "Erro de Validação", JOptionPane.ERROR_MESSAGE);
             return;
         }
@@ -172,51 +210,119 @@ public class ClientGUI extends JFrame {
             return;
         }
 
+        int choice = Integer.parseInt(optionsGroup.getSelection().getActionCommand());
+        // A chave acompanha o voto em todos os reenvios; o servidor reconhece um voto que já gravou
+        Vote vote = new Vote(cpf, electionData.getOptions().get(choice), choice, newIdempotencyKey());
+        if (session != null) {
+            try {
+                VoteResult result = session.submit(vote);
+                if (!VoteSpool.isRetryable(result.getStatus())) {
+                    JOptionPane.showMessageDialog(this, result.getMessage(), "Resposta do Servidor", JOptionPane.INFORMATION_MESSAGE);
+                    prepareForNextVoter();
+                    return;
+                }
+            } catch (IOException e) {
+                // Servidor caiu ou não respondeu a tempo; o voto pode até ter sido gravado, a chave resolve
+                System.err.println("Vote not confirmed by the server: " + e.getMessage());
+                dropSession();
+            }
+        }
+        spoolVote(vote);
+    }
+
+    /**
+     * Guarda o voto no disco do terminal; a fila o entrega quando o servidor responder.
+     */
+    private void spoolVote(Vote vote) {
         try {
-            String choice = optionsGroup.getSelection().getActionCommand();
-            Vote vote = new Vote(cpf.replaceAll("[^\\d]", ""), choice);
-            out.writeObject(vote);
-            out.flush();
-            String response = (String) in.readObject();
-            JOptionPane.showMessageDialog(this, response, "Resposta do Servidor", JOptionPane.INFORMATION_MESSAGE);
-            disconnect();
-        } catch (Exception e) {
-             JOptionPane.showMessageDialog(this, "Erro durante a votação: " + e.getMessage(), "Erro de Comunicação", JOptionPane.ERROR_MESSAGE);
+            spool.add(vote);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "O voto não pôde ser guardado neste terminal: " + e.getMessage()
+                    + "\nTente novamente.", "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        JOptionPane.showMessageDialog(this, "Servidor indisponível no momento.\n"
+                + "Seu voto foi guardado neste terminal e será enviado automaticamente.",
+                "Voto Guardado", JOptionPane.INFORMATION_MESSAGE);
+        prepareForNextVoter();
     }
-    
-    private void disconnect() {
+
+    private long newIdempotencyKey() {
+        long key;
+        do {
+            key = keyGenerator.nextLong();
+        } while (key == 0 || key == Long.MIN_VALUE);
+        return key;
+    }
+
+    /**
+     * Resultados da fila, trazidos para a thread da interface.
+     */
+    private final class SpoolListener implements VoteSpool.Listener {
+        @Override
+        public void delivered(Vote vote, VoteStatus status) {
+            if (status != VoteStatus.SUCCESS) {
+                System.out.println("Spooled vote of CPF " + vote.getCpf() + ": " + status.getMessage());
+            }
+        }
+
+        @Override
+        public void pendingChanged(int pending) {
+            SwingUtilities.invokeLater(() -> {
+                spoolLabel.setText(pending == 0 ? " " : "Votos aguardando envio ao servidor: " + pending);
+                // A fila esvaziou, então o servidor voltou: o terminal volta a votar direto
+                if (pending == 0 && session == null) reconnect();
+            });
+        }
+    }
+
+    private void reconnect() {
         try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (socket != null) socket.close();
-        } catch (IOException e) { /* Ignore */ } finally {
-            // Trava tudo após o voto
-            voteButton.setEnabled(false);
-            cpfField.setEnabled(false);
-            cpfField.setBackground(new Color(230, 230, 230));
+            session = VotingSession.open(host, port, electionId, tls);
+            session.setReplyTimeout(REPLY_TIMEOUT_MS);
+        } catch (IOException e) {
+            session = null;
         }
     }
 
-    private boolean isCpfValid(String cpf) {
-        String cleanCpf = cpf.replaceAll("[^\\d]", "");
-        if (cleanCpf.length() != 11 || cleanCpf.matches("(\\d)\\1{10}")) return false;
+    /**
+     * A sessão continua aberta: só limpa o CPF e a escolha para o próximo eleitor.
+     */
+    private void prepareForNextVoter() {
+        cpfField.setValue(null);
+        cpfField.setText("");
+        optionsGroup.clearSelection();
+        cpfField.requestFocus();
+    }
+    
+    /**
+     * Descarta a conexão; a votação continua liberada, agora pela fila local.
+     */
+    private void dropSession() {
         try {
-            int sum = 0;
-            for (int i = 0; i < 9; i++) sum += (cleanCpf.charAt(i) - '0') * (10 - i);
-            int r = (sum * 10) % 11;
-            if (r == 10) r = 0;
-            if (r != (cleanCpf.charAt(9) - '0')) return false;
-            sum = 0;
-            for (int i = 0; i < 10; i++) sum += (cleanCpf.charAt(i) - '0') * (11 - i);
-            r = (sum * 10) % 11;
-            if (r == 10) r = 0;
-            if (r != (cleanCpf.charAt(10) - '0')) return false;
-        } catch (NumberFormatException e) { return false; }
-        return true;
+            if (session != null) session.close();
+        } catch (IOException e) { /* Ignore */ } finally {
+            session = null;
+        }
     }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(ClientGUI::new);
+    /**
+     * Uso: ClientGUI [--truststore arquivo.p12 [--truststore-password senha]]
+     * Com o truststore, todas as conexões usam TLS e só aceitam os certificados dele.
+     */
+    public static void main(String[] args) throws IOException {
+        String trustStore = null;
+        String trustStorePassword = "changeit";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--truststore": trustStore = args[++i]; break;
+                case "--truststore-password": trustStorePassword = args[++i]; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        SSLContext tls = trustStore == null ? null : Tls.clientContext(Paths.get(trustStore), trustStorePassword.toCharArray());
+        SwingUtilities.invokeLater(() -> new ClientGUI(tls));
     }
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package com.voting.client;
+
+import com.voting.common.*;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gerador de carga sem interface gráfica: simula muitos terminais votando ao mesmo tempo
+ * contra o servidor, pelo mesmo protocolo binário do ClientGUI, e mede cada etapa.
+ *
+ * Etapas medidas: conexão TCP, recebimento dos dados da eleição, envio do voto e espera
+ * da resposta. Por padrão cada voto usa uma conexão nova (como um terminal antigo);
+ * com --session cada terminal abre uma sessão e vota várias vezes nela.
+ *
+ * Uso: LoadGenerator host porta [--terminals 1000] [--votes 20] [--duplicates 0.0] [--session] [--election id]
+ */
+public class LoadGenerator {
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+
+    // Pilha menor: milhares de terminais simulados, cada um com sua thread
+    private static final long TERMINAL_STACK_SIZE = 256 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int terminals;
+    private final int votesPerTerminal;
+    private final double duplicateRatio;
+    private final boolean session;
+    private final String electionId;
+
+    // Base dos CPFs gerados: cada execução usa uma faixa diferente para não repetir a anterior
+    private final long cpfBase;
+    private final AtomicLong issuedCpfs = new AtomicLong();
+
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram electionDataLatency = new LatencyHistogram();
+    private final LatencyHistogram voteLatency = new LatencyHistogram();
+    private final LatencyHistogram replyLatency = new LatencyHistogram();
+    private final Map<VoteStatus, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    public LoadGenerator(String host, int port, int terminals, int votesPerTerminal, double duplicateRatio, boolean session) {
+        this(host, port, terminals, votesPerTerminal, duplicateRatio, session, WireProtocol.DEFAULT_ELECTION);
+    }
+
+    public LoadGenerator(String host, int port, int terminals, int votesPerTerminal, double duplicateRatio, boolean session,
+                         String electionId) {
+        this.electionId = electionId;
+        this.host = host;
+        this.port = port;
+        this.terminals = terminals;
+        this.votesPerTerminal = votesPerTerminal;
+        this.duplicateRatio = duplicateRatio;
+        this.session = session;
+        this.cpfBase = ThreadLocalRandom.current().nextLong(100_000_000, 900_000_000);
+    }
+
+    /**
+     * Roda todos os terminais até o fim e imprime o relatório.
+     */
+    public void run() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(terminals);
+        for (int i = 0; i < terminals; i++) {
+            Thread terminal = new Thread(null, () -> {
+                try {
+                    start.await();
+                    if (session) runSession(); else runSingleVotes();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "terminal-" + i, TERMINAL_STACK_SIZE);
+            terminal.setDaemon(true);
+            terminal.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        report(System.nanoTime() - begin);
+    }
+
+    /**
+     * Um voto por conexão: conecta, lê os dados da eleição, vota e espera a resposta.
+     */
+    private void runSingleVotes() {
+        for (int i = 0; i < votesPerTerminal; i++) {
+            try (Terminal terminal = connect()) {
+                terminal.vote(WireProtocol.MSG_VOTE, new VoteRequest(VoteRequest.NO_REQUEST_ID, nextVote(terminal.electionData)));
+            } catch (IOException e) {
+                failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Uma sessão por terminal, com todos os votos na mesma conexão.
+     */
+    private void runSession() {
+        try (Terminal terminal = connect()) {
+            for (int i = 0; i < votesPerTerminal; i++) {
+                terminal.vote(WireProtocol.MSG_SESSION_VOTE, new VoteRequest(i, nextVote(terminal.electionData)));
+            }
+            WireProtocol.writeBye(terminal.out);
+        } catch (IOException e) {
+            failures.increment();
+        }
+    }
+
+    private Terminal connect() throws IOException {
+        long start = System.nanoTime();
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            long connected = System.nanoTime();
+            connectLatency.record(connected - start);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            WireProtocol.writeHello(out, electionId);
+            WireProtocol.Frame greeting = WireProtocol.readFrame(in);
+            if (greeting.getType() == WireProtocol.MSG_VOTE_RESULT) {
+                count(VoteResultCodec.decode(greeting).getStatus());
+                throw new ServerBusyException("Connection refused by the server.");
+            }
+            ElectionData electionData = ElectionDataCodec.decode(greeting);
+            electionDataLatency.record(System.nanoTime() - connected);
+            return new Terminal(socket, out, in, electionData);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Próximo voto: um CPF novo ou, com a probabilidade configurada, um CPF já usado.
+     */
+    private Vote nextVote(ElectionData electionData) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long issued = issuedCpfs.get();
+        long index = issued > 0 && random.nextDouble() < duplicateRatio
+                ? random.nextLong(issued)
+                : issuedCpfs.getAndIncrement();
+        List<String> options = electionData.getOptions();
+        return new Vote(Cpf.format(Cpf.withCheckDigits((cpfBase + index) % 1_000_000_000L)), options.get(random.nextInt(options.size())));
+    }
+
+    private void count(VoteStatus status) {
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    private void report(long elapsedNanos) {
+        long votes = replyLatency.getCount();
+        Map<VoteStatus, Long> totals = new EnumMap<>(VoteStatus.class);
+        statuses.forEach((status, count) -> totals.put(status, count.sum()));
+
+        System.out.printf("%d terminals, %d votes in %.2f s: %.0f votes/s (%s mode, %.0f%% duplicate CPFs)%n",
+                terminals, votes, elapsedNanos / 1e9, votes / (elapsedNanos / 1e9),
+                session ? "session" : "one vote per connection", duplicateRatio * 100);
+        System.out.println("  connect       " + connectLatency.summary());
+        System.out.println("  election data " + electionDataLatency.summary());
+        System.out.println("  vote (send)   " + voteLatency.summary());
+        System.out.println("  reply         " + replyLatency.summary());
+        System.out.println("  results: " + totals + (failures.sum() > 0 ? ", failed connections: " + failures.sum() : ""));
+    }
+
+    /**
+     * Um terminal simulado conectado.
+     */
+    private final class Terminal implements Closeable {
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final ElectionData electionData;
+
+        Terminal(Socket socket, DataOutputStream out, DataInputStream in, ElectionData electionData) {
+            this.socket = socket;
+            this.out = out;
+            this.in = in;
+            this.electionData = electionData;
+        }
+
+        void vote(byte type, VoteRequest request) throws IOException {
+            long start = System.nanoTime();
+            byte[] payload = request.isSession()
+                    ? VoteCodec.encode(request, electionData)
+                    : VoteCodec.encode(request.getVote(), electionData);
+            WireProtocol.writeFrame(out, type, payload);
+            long sent = System.nanoTime();
+            voteLatency.record(sent - start);
+
+            VoteResult result = VoteResultCodec.decode(WireProtocol.readFrame(in));
+            replyLatency.record(System.nanoTime() - sent);
+            count(result.getStatus());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadGenerator <host> <port> [--terminals N] [--votes N] [--duplicates 0..1] [--session] [--election id]");
+            System.exit(1);
+        }
+        int terminals = 1000;
+        int votes = 20;
+        double duplicates = 0;
+        boolean session = false;
+        String election = WireProtocol.DEFAULT_ELECTION;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--terminals": terminals = Integer.parseInt(args[++i]); break;
+                case "--votes": votes = Integer.parseInt(args[++i]); break;
+                case "--duplicates": duplicates = Double.parseDouble(args[++i]); break;
+                case "--session": session = true; break;
+                case "--election": election = args[++i]; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+        new LoadGenerator(args[0], Integer.parseInt(args[1]), terminals, votes, duplicates, session, election).run();
+    }
+}
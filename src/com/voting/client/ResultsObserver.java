@@ -0,0 +1,133 @@
+package com.voting.client;
+
+import com.voting.common.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.*;
+import java.nio.file.Paths;
+import java.net.Socket;
+
+/**
+ * Acompanha a apuração ao vivo (painéis, terminais de imprensa) sem consultar o servidor:
+ * ao se inscrever recebe a contagem completa e depois só as diferenças, empurradas
+ * pelo servidor a cada publicação.
+ *
+ * No cluster, conecte-se ao nó 0 (coordenador), que publica a soma de todos os nós.
+ */
+public class ResultsObserver implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final ElectionData electionData;
+    private long[] counts;
+    private long version = -1;
+
+    private ResultsObserver(Socket socket, DataInputStream in, ElectionData electionData) {
+        this.socket = socket;
+        this.in = in;
+        this.electionData = electionData;
+        this.counts = new long[electionData.getOptions().size()];
+    }
+
+    public static ResultsObserver open(String host, int port) throws IOException {
+        return open(host, port, WireProtocol.DEFAULT_ELECTION);
+    }
+
+    /**
+     * Conecta, lê os dados da eleição e se inscreve.
+     *
+     * @throws ServerBusyException se o servidor recusou a conexão por excesso de carga
+     * @throws IOException com a mensagem do servidor se ele não conhece a eleição
+     */
+    public static ResultsObserver open(String host, int port, String electionId) throws IOException {
+        return open(host, port, electionId, null);
+    }
+
+    /**
+     * @param tls contexto TLS, ou null para texto puro
+     */
+    public static ResultsObserver open(String host, int port, String electionId, SSLContext tls) throws IOException {
+        Socket socket = VotingSession.connect(host, port, tls);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            WireProtocol.writeHello(out, electionId);
+            ElectionData data = VotingSession.readGreeting(in);
+            WireProtocol.writeFrame(out, WireProtocol.MSG_SUBSCRIBE, TallyUpdateCodec.encodeSubscribe());
+            return new ResultsObserver(socket, in, data);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public ElectionData getElectionData() {
+        return electionData;
+    }
+
+    /**
+     * Espera a próxima publicação e devolve a contagem atualizada, na ordem da cédula.
+     *
+     * @throws ServerBusyException se o servidor já tem observadores demais
+     */
+    public long[] awaitUpdate() throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(in);
+        if (frame.getType() == WireProtocol.MSG_VOTE_RESULT) {
+            throw new ServerBusyException(VoteResultCodec.decode(frame).getMessage());
+        }
+        TallyUpdate update = TallyUpdateCodec.decode(frame);
+        // Um delta só vale sobre a versão anterior; o servidor manda uma contagem completa em vez de pular versões
+        if (!update.isFull() && update.getVersion() != version + 1) {
+            throw new StreamCorruptedException("Tally update " + update.getVersion()
+                    + " does not follow version " + version + ".");
+        }
+        update.applyTo(counts);
+        version = update.getVersion();
+        return counts.clone();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Mostra a apuração no console a cada publicação.
+     * Uso: ResultsObserver host porta [eleição] [--truststore arquivo.p12 [--truststore-password senha]]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ResultsObserver <host> <port> [election] [--truststore file.p12 [--truststore-password pw]]");
+            System.exit(1);
+        }
+        String election = WireProtocol.DEFAULT_ELECTION;
+        String trustStore = null;
+        String trustStorePassword = "changeit";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--truststore": trustStore = args[++i]; break;
+                case "--truststore-password": trustStorePassword = args[++i]; break;
+                default: election = args[i];
+            }
+        }
+        SSLContext tls = trustStore == null ? null : Tls.clientContext(Paths.get(trustStore), trustStorePassword.toCharArray());
+        try (ResultsObserver observer = open(args[0], Integer.parseInt(args[1]), election, tls)) {
+            System.out.println(observer.getElectionData().getQuestion());
+            while (true) {
+                long[] counts = observer.awaitUpdate();
+                StringBuilder line = new StringBuilder("v").append(observer.getVersion());
+                long total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    line.append(" | ").append(observer.getElectionData().getOptions().get(i)).append(": ").append(counts[i]);
+                    total += counts[i];
+                }
+                System.out.println(line.append(" | total: ").append(total));
+            }
+        } catch (EOFException e) {
+            System.out.println("Server closed the connection.");
+        }
+    }
+}
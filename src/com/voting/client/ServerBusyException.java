@@ -0,0 +1,14 @@
+package com.voting.client;
+
+import java.io.IOException;
+
+/**
+ * O servidor recusou a conexão por estar no limite de conexões simultâneas.
+ */
+public class ServerBusyException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,322 @@
+package com.voting.client;
+
+import com.voting.common.BatchResult;
+import com.voting.common.Vote;
+import com.voting.common.VoteStatus;
+
+import javax.net.ssl.SSLContext;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fila local dos votos que o terminal ainda não conseguiu entregar ao servidor.
+ *
+ * Cada voto entra no arquivo (uma linha {@code chave;cpf;ordinal;opção}, com fsync) antes
+ * de o eleitor ser liberado, então nem a queda do servidor nem a do terminal perdem o voto.
+ * Um voto entregue ganha uma linha só com a chave, acrescentada no fim; o arquivo é
+ * compactado de tempos em tempos, quando as linhas já entregues passam a dominar, e não a
+ * cada lote, para quem vota não esperar a regravação da fila inteira depois de uma queda longa.
+ * Uma thread envia o que estiver pendente em lotes pela sua própria {@link VotingSession};
+ * sem servidor, ela espera com backoff exponencial (com jitter, para os terminais de uma
+ * seção não voltarem todos no mesmo instante) e tenta de novo.
+ *
+ * Os votos levam a chave de idempotência: se o servidor gravou um voto mas a resposta se
+ * perdeu, o reenvio recebe o "SUCCESS" original. Um voto sai da fila quando recebe um
+ * resultado final; "servidor ocupado", "erro" e "não é o primário" ficam para a próxima tentativa.
+ */
+public class VoteSpool implements Closeable {
+    private static final int MAX_BATCH = 500;
+    private static final int REPLY_TIMEOUT_MS = 10_000;
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    // Compacta quando há ao menos tantas linhas mortas, e mais que o dobro das vivas
+    private static final int COMPACT_MIN_DEAD_LINES = 10_000;
+
+    /**
+     * Avisos da thread de envio; chegam fora da thread da interface.
+     */
+    public interface Listener {
+        // Um voto da fila recebeu resultado final do servidor
+        void delivered(Vote vote, VoteStatus status);
+
+        void pendingChanged(int pending);
+    }
+
+    private final Path file;
+    private final String host;
+    private final int port;
+    private final String electionId;
+    private final SSLContext tls;
+    private final Listener listener;
+
+    // Chave -> voto, na ordem em que entraram; protegido por this
+    private final Map<Long, Vote> pending = new LinkedHashMap<>();
+    private FileChannel out;
+    // Linhas do arquivo que não são mais votos pendentes (votos entregues e suas marcas); protegido por this
+    private int deadLines;
+    private final Thread drainer;
+    // Acorda a thread de envio durante o backoff quando a fila é fechada
+    private final Object stop = new Object();
+    private volatile boolean running = true;
+    private volatile VotingSession session;
+
+    /**
+     * Abre (ou cria) o arquivo da fila e começa a enviar o que já estiver nele,
+     * como os votos que sobraram de uma execução anterior do terminal.
+     */
+    public VoteSpool(Path file, String host, int port, String electionId, SSLContext tls, Listener listener)
+            throws IOException {
+        this.file = file;
+        this.host = host;
+        this.port = port;
+        this.electionId = electionId;
+        this.tls = tls;
+        this.listener = listener;
+        if (Files.exists(file)) load();
+        this.out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.drainer = new Thread(this::drainLoop, "vote-spool-" + electionId);
+        drainer.setDaemon(true);
+        drainer.start();
+        if (!pending.isEmpty()) {
+            System.out.println("Spool: " + pending.size() + " votes left from a previous run will be resent.");
+            listener.pendingChanged(pending.size());
+        }
+    }
+
+    /**
+     * Grava o voto no disco e agenda o envio. Quando volta, o voto já sobrevive a uma queda do terminal.
+     */
+    public void add(Vote vote) throws IOException {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(format(vote));
+        int size;
+        synchronized (this) {
+            while (line.hasRemaining()) out.write(line);
+            out.force(false);
+            pending.put(vote.getIdempotencyKey(), vote);
+            size = pending.size();
+            notifyAll();
+        }
+        listener.pendingChanged(size);
+    }
+
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    private void drainLoop() {
+        long backoff = INITIAL_BACKOFF_MS;
+        while (running) {
+            List<Vote> batch;
+            synchronized (this) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) return;
+                batch = new ArrayList<>(Math.min(pending.size(), MAX_BATCH));
+                for (Vote vote : pending.values()) {
+                    if (batch.size() == MAX_BATCH) break;
+                    batch.add(vote);
+                }
+            }
+
+            try {
+                VotingSession current = session;
+                if (current == null) {
+                    current = VotingSession.open(host, port, electionId, tls);
+                    current.setReplyTimeout(REPLY_TIMEOUT_MS);
+                    session = current;
+                }
+                current.sendBatch(batch);
+                BatchResult result = current.readBatchResult();
+                if (result.size() != batch.size()) {
+                    throw new StreamCorruptedException("Reply with " + result.size() + " statuses for " + batch.size() + " votes.");
+                }
+                boolean retry = complete(batch, result);
+                // Servidor no ar mas sem conseguir gravar: espera antes de reenviar
+                backoff = retry ? sleep(backoff) : INITIAL_BACKOFF_MS;
+            } catch (IOException e) {
+                closeSession();
+                if (!running) return;
+                System.err.println("Spool: " + batch.size() + " votes not sent (" + e.getMessage() + "); retrying in up to "
+                        + backoff + " ms");
+                backoff = sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Tira da fila os votos com resultado final e marca no arquivo que foram entregues.
+     * Devolve true se algum voto do lote ficou para uma nova tentativa.
+     */
+    private boolean complete(List<Vote> batch, BatchResult result) throws IOException {
+        boolean retry = false;
+        int size;
+        StringBuilder delivered = new StringBuilder();
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (isRetryable(result.getStatus(i))) {
+                    retry = true;
+                } else if (pending.remove(batch.get(i).getIdempotencyKey()) != null) {
+                    delivered.append(batch.get(i).getIdempotencyKey()).append('\n');
+                    deadLines += 2;
+                }
+            }
+            markDelivered(delivered);
+            size = pending.size();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (!isRetryable(result.getStatus(i))) listener.delivered(batch.get(i), result.getStatus(i));
+        }
+        listener.pendingChanged(size);
+        return retry;
+    }
+
+    static boolean isRetryable(VoteStatus status) {
+        return status == VoteStatus.SERVER_BUSY || status == VoteStatus.ERROR || status == VoteStatus.NOT_PRIMARY;
+    }
+
+    /**
+     * Espera entre metade e o total do backoff atual e devolve o próximo (o dobro, até o limite).
+     */
+    private long sleep(long backoff) {
+        synchronized (stop) {
+            try {
+                if (running) stop.wait(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+        return Math.min(backoff * 2, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * Acrescenta as marcas de entrega, sem fsync: uma marca perdida numa queda só faz o voto
+     * ser reenviado, e o reenvio recebe o resultado original pela chave.
+     */
+    private void markDelivered(CharSequence delivered) throws IOException {
+        if (pending.isEmpty()) {
+            // Nada pendente: o arquivo inteiro está morto e basta esvaziá-lo
+            out.truncate(0);
+            deadLines = 0;
+            return;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(delivered.toString());
+        while (bytes.hasRemaining()) out.write(bytes);
+        if (deadLines >= COMPACT_MIN_DEAD_LINES && deadLines > 2 * pending.size()) compact();
+    }
+
+    /**
+     * Regrava o arquivo só com os votos pendentes e o troca de forma atômica: uma queda no
+     * meio deixa o arquivo antigo inteiro. O canal novo é aberto antes da troca, então uma
+     * falha deixa o canal atual em uso e a fila continua aceitando votos.
+     */
+    private void compact() {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        FileChannel next = null;
+        try {
+            next = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            StringBuilder lines = new StringBuilder();
+            for (Vote vote : pending.values()) lines.append(format(vote));
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(lines.toString());
+            while (bytes.hasRemaining()) next.write(bytes);
+            next.force(true);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Spool: compaction failed (" + e.getMessage() + "); keeping the current file");
+            if (next != null) {
+                try {
+                    next.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) { /* Ignore */ }
+            }
+            return;
+        }
+        FileChannel previous = out;
+        out = next;
+        deadLines = 0;
+        try {
+            previous.close();
+        } catch (IOException e) { /* Ignore */ }
+    }
+
+    private static String format(Vote vote) {
+        return vote.getIdempotencyKey() + ";" + vote.getCpfNumber() + ";" + vote.getOptionIndex() + ";"
+                + vote.getChosenOption() + "\n";
+    }
+
+    /**
+     * Lê as linhas completas; uma última linha sem o '\n' é de uma gravação interrompida
+     * e o eleitor dela não chegou a ser liberado. Uma linha só com a chave tira o voto da fila.
+     */
+    private void load() throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n') + 1;
+        for (String line : content.substring(0, end).split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split(";", 4);
+            try {
+                long key = Long.parseLong(fields[0]);
+                if (fields.length == 1) {
+                    pending.remove(key);
+                    deadLines += 2;
+                    continue;
+                }
+                Vote vote = new Vote(Long.parseLong(fields[1]), fields[3], Integer.parseInt(fields[2]), key);
+                pending.put(key, vote);
+            } catch (RuntimeException e) {
+                System.err.println("Spool: ignoring unreadable line: " + line);
+            }
+        }
+        if (end < content.length()) {
+            try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                truncate.truncate(content.substring(0, end).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+    }
+
+    private void closeSession() {
+        VotingSession current = session;
+        if (current == null) return;
+        session = null;
+        try {
+            current.close();
+        } catch (IOException e) { /* Ignore */ }
+    }
+
+    /**
+     * Para o envio; o que ainda estiver pendente continua no arquivo para a próxima execução.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        synchronized (stop) {
+            stop.notifyAll();
+        }
+        // Um envio em andamento é cortado ao fechar a sessão
+        closeSession();
+        try {
+            drainer.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.voting.client;
+
+import com.voting.common.*;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Sessão de um terminal com o servidor: uma única conexão atende muitos eleitores.
+ * Os dados da eleição são lidos uma vez, ao conectar, e cada voto leva um id
+ * que precisa voltar na resposta.
+ *
+ * Escrita e leitura têm locks separados para permitir pipeline de lotes:
+ * uma thread envia com {@link #sendBatch} enquanto outra lê com {@link #readBatchResult}.
+ *
+ * Com um {@link SSLContext} (ver {@link Tls#clientContext}) a sessão usa TLS. O terminal deve
+ * criar o contexto uma vez e passá-lo a todas as conexões: é nele que fica a sessão TLS
+ * retomada na reconexão seguinte, sem repetir o handshake completo.
+ *
+ * Parada entre eleitores, a sessão manda um ping (ver {@link WireProtocol#MSG_PING}) para o
+ * servidor não a encerrar como ociosa; os pings de todas as sessões saem de uma única thread.
+ */
+public class VotingSession implements Closeable {
+    // Servidor fora do ar não deve prender o terminal no timeout de conexão do sistema operacional
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    // Verificada a cada meio intervalo: nenhuma sessão fica mais que PING_INTERVAL_MILLIS sem escrever
+    private static final long KEEP_ALIVE_CHECK_MILLIS = WireProtocol.PING_INTERVAL_MILLIS / 2;
+    private static final ScheduledExecutorService KEEP_ALIVE = newKeepAlive();
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final ElectionData electionData;
+    private final Object writeLock = new Object();
+    private final Object readLock = new Object();
+    private int nextRequestId;
+    // Escrito sob o writeLock
+    private long lastWriteNanos = System.nanoTime();
+    private final ScheduledFuture<?> keepAlive;
+
+    private VotingSession(Socket socket, DataOutputStream out, DataInputStream in, ElectionData electionData) {
+        this.socket = socket;
+        this.out = out;
+        this.in = in;
+        this.electionData = electionData;
+        this.keepAlive = KEEP_ALIVE.scheduleWithFixedDelay(this::pingIfIdle, KEEP_ALIVE_CHECK_MILLIS,
+                KEEP_ALIVE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService newKeepAlive() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "session-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        // Terminais que abrem uma sessão por eleitor não deixam tarefas canceladas acumulando
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Conecta à eleição padrão do servidor.
+     *
+     * @throws ServerBusyException se o servidor recusou a conexão por excesso de carga
+     */
+    public static VotingSession open(String host, int port) throws IOException {
+        return open(host, port, WireProtocol.DEFAULT_ELECTION);
+    }
+
+    /**
+     * Conecta, negocia o protocolo binário e lê os dados da eleição escolhida.
+     *
+     * @throws ServerBusyException se o servidor recusou a conexão por excesso de carga
+     * @throws IOException com a mensagem do servidor se ele não conhece a eleição
+     */
+    public static VotingSession open(String host, int port, String electionId) throws IOException {
+        return open(host, port, electionId, null);
+    }
+
+    /**
+     * @param tls contexto TLS do terminal, ou null para texto puro
+     */
+    public static VotingSession open(String host, int port, String electionId, SSLContext tls) throws IOException {
+        Socket socket = connect(host, port, tls);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            WireProtocol.writeHello(out, electionId);
+            // Anuncia a sessão: sem isso o servidor aplicaria o readTimeoutMillis até o primeiro eleitor
+            WireProtocol.writePing(out);
+            return new VotingSession(socket, out, in, readGreeting(in));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Conecta com prazo e, se houver contexto, abre o TLS (o handshake acontece no primeiro envio).
+     */
+    static Socket connect(String host, int port, SSLContext tls) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            return tls == null ? socket : Tls.wrap(tls, socket, host, port);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Dados da eleição enviados pelo servidor logo depois do handshake.
+     */
+    static ElectionData readGreeting(DataInputStream in) throws IOException {
+        return ElectionDataCodec.decode(readReply(in));
+    }
+
+    /**
+     * Próximo frame do servidor. Uma recusa (servidor sobrecarregado, standby, eleição desconhecida)
+     * chega como MSG_VOTE_RESULT sem id, no lugar dos dados da eleição ou, se não há vaga de
+     * sessão para o ping de abertura, da primeira resposta da sessão.
+     */
+    private static WireProtocol.Frame readReply(DataInputStream in) throws IOException {
+        WireProtocol.Frame frame = WireProtocol.readFrame(in);
+        if (frame.getType() == WireProtocol.MSG_VOTE_RESULT) {
+            VoteResult refusal = VoteResultCodec.decode(frame);
+            if (refusal.getStatus() == VoteStatus.SERVER_BUSY || refusal.getStatus() == VoteStatus.NOT_PRIMARY) {
+                throw new ServerBusyException(refusal.getMessage());
+            }
+            throw new IOException(refusal.getMessage());
+        }
+        return frame;
+    }
+
+    public ElectionData getElectionData() {
+        return electionData;
+    }
+
+    /**
+     * Sessão TLS da conexão (protocolo, cifra), ou null em texto puro.
+     */
+    public SSLSession getTlsSession() {
+        return socket instanceof SSLSocket ? ((SSLSocket) socket).getSession() : null;
+    }
+
+    /**
+     * Tempo máximo de espera por uma resposta; estourado, a leitura lança
+     * {@link java.net.SocketTimeoutException} e a sessão deve ser descartada. 0 espera para sempre.
+     */
+    public void setReplyTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    /**
+     * Envia um voto e espera a resposta correspondente.
+     */
+    public VoteResult submit(Vote vote) throws IOException {
+        synchronized (readLock) {
+            int requestId;
+            synchronized (writeLock) {
+                requestId = nextRequestId++;
+                WireProtocol.writeFrame(out, WireProtocol.MSG_SESSION_VOTE,
+                        VoteCodec.encode(new VoteRequest(requestId, vote), electionData));
+                lastWriteNanos = System.nanoTime();
+            }
+
+            VoteResult result = VoteResultCodec.decode(readReply(in));
+            checkRequestId(result.getRequestId(), requestId);
+            return result;
+        }
+    }
+
+    /**
+     * Envia um lote sem esperar a resposta e devolve o id do pedido.
+     * As respostas chegam na ordem de envio, via {@link #readBatchResult()}.
+     */
+    public int sendBatch(List<Vote> votes) throws IOException {
+        return sendBatch(votes, requestId -> { });
+    }
+
+    /**
+     * Como {@link #sendBatch(List)}, mas entrega o id a {@code beforeSend} antes de o frame
+     * sair: quem lê as respostas em outra thread pode recebê-la antes de o envio voltar.
+     */
+    int sendBatch(List<Vote> votes, IntConsumer beforeSend) throws IOException {
+        synchronized (writeLock) {
+            int requestId = nextRequestId++;
+            beforeSend.accept(requestId);
+            WireProtocol.writeFrame(out, WireProtocol.MSG_BATCH_VOTE,
+                    BatchCodec.encode(VoteRequest.batch(requestId, votes), electionData));
+            lastWriteNanos = System.nanoTime();
+            return requestId;
+        }
+    }
+
+    public BatchResult readBatchResult() throws IOException {
+        synchronized (readLock) {
+            return BatchCodec.decodeResult(readReply(in));
+        }
+    }
+
+    static void checkRequestId(int received, int expected) throws StreamCorruptedException {
+        if (received != expected) {
+            throw new StreamCorruptedException("Reply for request " + received
+                    + " while waiting for " + expected + ".");
+        }
+    }
+
+    private void pingIfIdle() {
+        synchronized (writeLock) {
+            long now = System.nanoTime();
+            if (socket.isClosed() || now - lastWriteNanos < TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_CHECK_MILLIS)) return;
+            try {
+                WireProtocol.writePing(out);
+                lastWriteNanos = now;
+            } catch (IOException e) {
+                // A conexão caiu; o próximo voto recebe o erro e o terminal reconecta
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        keepAlive.cancel(false);
+        try {
+            synchronized (writeLock) {
+                if (!socket.isClosed()) WireProtocol.writeBye(out);
+            }
+        } catch (IOException e) {
+            // A conexão já caiu; basta fechar o socket
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.voting.common;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codifica lotes de votos e suas respostas.
+ * Lote: id do pedido, quantidade e os votos no formato de {@link VoteCodec}.
+ * Resposta: id do pedido, quantidade e um byte de {@link VoteStatus} por voto.
+ * Lotes repassados entre nós do cluster usam o mesmo corpo com outro tipo de frame.
+ */
+public final class BatchCodec {
+    // Quantos votos cabem em um frame
+    public static final int MAX_BATCH_SIZE = (WireProtocol.MAX_FRAME_LENGTH - 2 * Integer.BYTES) / VoteCodec.PAYLOAD_SIZE;
+
+    private BatchCodec() {
+    }
+
+    public static byte[] encode(VoteRequest batch, ElectionData data) throws IOException {
+        List<Vote> votes = batch.getVotes();
+        if (votes.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH_SIZE + " votes.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * Integer.BYTES + votes.size() * VoteCodec.PAYLOAD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(batch.getRequestId());
+        out.writeInt(votes.size());
+        for (Vote vote : votes) {
+            VoteCodec.writeVote(out, vote, data);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static byte frameType(VoteRequest batch) {
+        return batch.isForwarded() ? WireProtocol.MSG_FORWARD_BATCH : WireProtocol.MSG_BATCH_VOTE;
+    }
+
+    public static VoteRequest decode(WireProtocol.Frame frame, ElectionData data) throws IOException {
+        return decode(frame, data, WireProtocol.VERSION);
+    }
+
+    public static VoteRequest decode(WireProtocol.Frame frame, ElectionData data, int version) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_BATCH_VOTE, WireProtocol.MSG_FORWARD_BATCH).payload();
+        int requestId = in.readInt();
+        int count = readCount(in);
+        List<Vote> votes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            votes.add(VoteCodec.readVote(in, data, version));
+        }
+        return frame.getType() == WireProtocol.MSG_FORWARD_BATCH
+                ? VoteRequest.forwardedBatch(requestId, votes)
+                : VoteRequest.batch(requestId, votes);
+    }
+
+    public static byte[] encodeResult(BatchResult result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * Integer.BYTES + result.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(result.getRequestId());
+        out.writeInt(result.size());
+        for (int i = 0; i < result.size(); i++) {
+            out.writeByte(result.getStatus(i).getCode());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static BatchResult decodeResult(WireProtocol.Frame frame) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_BATCH_RESULT).payload();
+        int requestId = in.readInt();
+        int count = readCount(in);
+        VoteStatus[] statuses = new VoteStatus[count];
+        for (int i = 0; i < count; i++) {
+            statuses[i] = VoteStatus.fromCode(in.readUnsignedByte());
+        }
+        return new BatchResult(requestId, statuses);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_BATCH_SIZE) {
+            throw new StreamCorruptedException("Invalid batch size " + count + ".");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,34 @@
+package com.voting.common;
+
+/**
+ * Resposta a um lote: um {@link VoteStatus} por voto, na mesma ordem do lote enviado.
+ */
+public final class BatchResult {
+    private final int requestId;
+    private final VoteStatus[] statuses;
+
+    public BatchResult(int requestId, VoteStatus[] statuses) {
+        this.requestId = requestId;
+        this.statuses = statuses;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public int size() {
+        return statuses.length;
+    }
+
+    public VoteStatus getStatus(int index) {
+        return statuses[index];
+    }
+
+    public int count(VoteStatus status) {
+        int count = 0;
+        for (VoteStatus s : statuses) {
+            if (s == status) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+package com.voting.common;
+
+/**
+ * Leitura e validação de CPF, usada pelo terminal e pelo servidor.
+ *
+ * O CPF é lido direto para um long em uma única passada, já conferindo os dois
+ * dígitos verificadores: sem expressões regulares e sem criar Strings.
+ * Aceita os 11 dígitos puros ou com a máscara ({@code 529.982.247-25}).
+ */
+public final class Cpf {
+    public static final int LENGTH = 11;
+
+    // Devolvido por parse() quando o CPF é inválido
+    public static final long INVALID = -1;
+
+    private static final long MAX = 99_999_999_999L;
+
+    private Cpf() {
+    }
+
+    /**
+     * CPF como long, ou {@link #INVALID} se não tem 11 dígitos, tem caracteres além
+     * da máscara, tem todos os dígitos iguais ou os dígitos verificadores não conferem.
+     */
+    public static long parse(CharSequence cpf) {
+        if (cpf == null) return INVALID;
+        long value = 0;
+        int digits = 0;
+        int first = -1;
+        boolean allEqual = true;
+        int sum1 = 0;
+        int sum2 = 0;
+        int check1 = 0;
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c == '.' || c == '-' || c == ' ') continue;
+            if (c < '0' || c > '9' || digits == LENGTH) return INVALID;
+            int d = c - '0';
+            if (first < 0) first = d;
+            else if (d != first) allEqual = false;
+
+            // Pesos 10..2 para o primeiro verificador e 11..2 para o segundo
+            if (digits < 9) sum1 += d * (10 - digits);
+            if (digits < 10) sum2 += d * (11 - digits);
+            if (digits == 9) check1 = d;
+            value = value * 10 + d;
+            digits++;
+        }
+        if (digits != LENGTH || allEqual) return INVALID;
+        if (checkDigit(sum1) != check1 || checkDigit(sum2) != (int) (value % 10)) return INVALID;
+        return value;
+    }
+
+    public static boolean isValid(CharSequence cpf) {
+        return parse(cpf) != INVALID;
+    }
+
+    /**
+     * Confere um CPF que já chegou como número (protocolo binário, journal).
+     */
+    public static boolean isValid(long cpf) {
+        if (cpf < 0 || cpf > MAX) return false;
+        int sum1 = 0;
+        int sum2 = 0;
+        long rest = cpf / 10;
+        int check1 = (int) (rest % 10);
+        boolean allEqual = true;
+        int last = (int) (cpf % 10);
+        // Da direita para a esquerda: o dígito na posição i (0 = mais à esquerda) tem peso 10-i / 11-i
+        for (int i = 9; i >= 0; i--) {
+            int d = (int) (rest % 10);
+            rest /= 10;
+            if (d != last) allEqual = false;
+            if (i < 9) sum1 += d * (10 - i);
+            sum2 += d * (11 - i);
+        }
+        return !allEqual && checkDigit(sum1) == check1 && checkDigit(sum2) == last;
+    }
+
+    /**
+     * Completa os 9 primeiros dígitos ({@code base}, de 0 a 999999999) com os verificadores.
+     */
+    public static long withCheckDigits(long base) {
+        int sum1 = 0;
+        int sum2 = 0;
+        long rest = base;
+        for (int i = 8; i >= 0; i--) {
+            int d = (int) (rest % 10);
+            rest /= 10;
+            sum1 += d * (10 - i);
+            sum2 += d * (11 - i);
+        }
+        int check1 = checkDigit(sum1);
+        sum2 += check1 * 2;
+        return (base * 10 + check1) * 10 + checkDigit(sum2);
+    }
+
+    /**
+     * Os 11 dígitos, com os zeros à esquerda que o long perde.
+     */
+    public static String format(long cpf) {
+        char[] digits = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + cpf % 10);
+            cpf /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Acrescenta o CPF com máscara ({@code 000.000.000-00}) sem Strings intermediárias.
+     */
+    public static StringBuilder appendMasked(StringBuilder out, long cpf) {
+        long divisor = 10_000_000_000L;
+        for (int i = 0; i < LENGTH; i++) {
+            if (i == 3 || i == 6) out.append('.');
+            else if (i == 9) out.append('-');
+            out.append((char) ('0' + (cpf / divisor) % 10));
+            divisor /= 10;
+        }
+        return out;
+    }
+
+    private static int checkDigit(int sum) {
+        int remainder = (sum * 10) % 11;
+        return remainder == 10 ? 0 : remainder;
+    }
+}
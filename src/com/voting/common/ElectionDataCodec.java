@@ -0,0 +1,37 @@
+package com.voting.common;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codifica ElectionData no protocolo binário: pergunta e lista de opções em UTF-8.
+ * A posição de cada opção na lista é o ordinal usado nos votos.
+ */
+public final class ElectionDataCodec {
+
+    private ElectionDataCodec() {
+    }
+
+    public static byte[] encode(ElectionData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(data.getQuestion());
+        out.writeShort(data.getOptions().size());
+        for (String option : data.getOptions()) {
+            out.writeUTF(option);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ElectionData decode(WireProtocol.Frame frame) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_ELECTION_DATA).payload();
+        String question = in.readUTF();
+        int count = in.readUnsignedShort();
+        List<String> options = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            options.add(in.readUTF());
+        }
+        return new ElectionData(question, options);
+    }
+}
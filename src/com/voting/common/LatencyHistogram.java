@@ -0,0 +1,101 @@
+package com.voting.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos, no estilo do HdrHistogram:
+ * faixas por potência de dois, cada uma dividida em 32 partes iguais, então qualquer
+ * percentil sai com erro relativo de no máximo ~3%, em memória fixa (~16 KB).
+ * Pode ser alimentado por várias threads ao mesmo tempo, sem lock.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Potências de dois acima da faixa linear inicial (até 2^63 ns)
+    private static final int MAGNITUDES = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAGNITUDES + 1) * SUB_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        totalCount.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Valor abaixo do qual estão {@code percentile}% das amostras (ex.: 99.9).
+     * Devolve o limite superior da faixa, ou seja, nunca subestima a latência.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = totalCount.sum();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBoundOf(i), maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Zera as amostras (para janelas de medição).
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        totalCount.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * "p50 1.23 ms, p99 4.56 ms, p999 7.89 ms, max 9.99 ms"
+     */
+    public String summary() {
+        return String.format("p50 %s, p99 %s, p999 %s, max %s",
+                format(getPercentileNanos(50)), format(getPercentileNanos(99)),
+                format(getPercentileNanos(99.9)), format(getMaxNanos()));
+    }
+
+    public static String format(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.1f us", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.2f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    private static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        // Faixa [2^m, 2^(m+1)): os SUB_BUCKET_BITS bits seguintes ao mais alto escolhem a parte
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (nanos >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        long subBucket = index % SUB_BUCKETS;
+        if (magnitude == 0) return subBucket;
+        return ((SUB_BUCKETS + subBucket + 1) << (magnitude - 1)) - 1;
+    }
+}
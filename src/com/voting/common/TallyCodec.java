@@ -0,0 +1,44 @@
+package com.voting.common;
+
+import java.io.*;
+
+/**
+ * Codifica o pedido de contagem entre nós do cluster e a resposta.
+ * Pedido: id do pedido. Resposta: id do pedido, quantidade de opções e um long por opção.
+ */
+public final class TallyCodec {
+
+    private TallyCodec() {
+    }
+
+    public static byte[] encodeQuery(int requestId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES);
+        new DataOutputStream(bytes).writeInt(requestId);
+        return bytes.toByteArray();
+    }
+
+    public static VoteRequest decodeQuery(WireProtocol.Frame frame) throws IOException {
+        return VoteRequest.tallyQuery(frame.expect(WireProtocol.MSG_TALLY_QUERY).payload().readInt());
+    }
+
+    public static byte[] encode(TallyResult tally) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * Integer.BYTES + tally.optionCount() * Long.BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(tally.getRequestId());
+        out.writeShort(tally.optionCount());
+        for (int i = 0; i < tally.optionCount(); i++) {
+            out.writeLong(tally.getCount(i));
+        }
+        return bytes.toByteArray();
+    }
+
+    public static TallyResult decode(WireProtocol.Frame frame) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_TALLY).payload();
+        int requestId = in.readInt();
+        long[] counts = new long[in.readUnsignedShort()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readLong();
+        }
+        return new TallyResult(requestId, counts);
+    }
+}
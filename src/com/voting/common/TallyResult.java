@@ -0,0 +1,26 @@
+package com.voting.common;
+
+/**
+ * Contagem local de um nó do cluster: votos por opção, na ordem da cédula.
+ */
+public final class TallyResult {
+    private final int requestId;
+    private final long[] counts;
+
+    public TallyResult(int requestId, long[] counts) {
+        this.requestId = requestId;
+        this.counts = counts;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public int optionCount() {
+        return counts.length;
+    }
+
+    public long getCount(int option) {
+        return counts[option];
+    }
+}
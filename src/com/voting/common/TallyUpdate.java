@@ -0,0 +1,44 @@
+package com.voting.common;
+
+/**
+ * Uma publicação da apuração para os observadores, na ordem da cédula.
+ * Completa: o total de cada opção. Delta: quanto cada opção mudou desde a
+ * versão anterior (0 = sem mudança). As versões são consecutivas, então o
+ * observador percebe se perdeu alguma publicação.
+ */
+public final class TallyUpdate {
+    private final long version;
+    private final boolean full;
+    private final long[] values;
+
+    public TallyUpdate(long version, boolean full, long[] values) {
+        this.version = version;
+        this.full = full;
+        this.values = values;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public int optionCount() {
+        return values.length;
+    }
+
+    public long getValue(int option) {
+        return values[option];
+    }
+
+    /**
+     * Aplica a publicação sobre a contagem que o observador tem (substitui se for completa).
+     */
+    public void applyTo(long[] counts) {
+        for (int i = 0; i < values.length && i < counts.length; i++) {
+            counts[i] = full ? values[i] : counts[i] + values[i];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.voting.common;
+
+import java.io.*;
+
+/**
+ * Codifica as publicações enviadas aos observadores (MSG_TALLY_UPDATE).
+ * Corpo: versão (long), completa (byte), quantidade de opções (short),
+ * quantidade de entradas (short) e, por entrada, ordinal (short) e valor (long).
+ * Um delta só leva as opções que mudaram.
+ */
+public final class TallyUpdateCodec {
+
+    private TallyUpdateCodec() {
+    }
+
+    public static byte[] encodeSubscribe() {
+        return new byte[0];
+    }
+
+    public static byte[] encode(TallyUpdate update) throws IOException {
+        int entries = 0;
+        for (int i = 0; i < update.optionCount(); i++) {
+            if (update.isFull() || update.getValue(i) != 0) entries++;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Long.BYTES + 5 + entries * (Short.BYTES + Long.BYTES));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(update.getVersion());
+        out.writeBoolean(update.isFull());
+        out.writeShort(update.optionCount());
+        out.writeShort(entries);
+        for (int i = 0; i < update.optionCount(); i++) {
+            if (!update.isFull() && update.getValue(i) == 0) continue;
+            out.writeShort(i);
+            out.writeLong(update.getValue(i));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * O frame inteiro (cabeçalho incluído), pronto para ser escrito em várias conexões.
+     */
+    public static byte[] encodeFrame(TallyUpdate update) throws IOException {
+        byte[] payload = encode(update);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES + 1 + payload.length);
+        WireProtocol.writeFrame(new DataOutputStream(bytes), WireProtocol.MSG_TALLY_UPDATE, payload);
+        return bytes.toByteArray();
+    }
+
+    public static TallyUpdate decode(WireProtocol.Frame frame) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_TALLY_UPDATE).payload();
+        long version = in.readLong();
+        boolean full = in.readBoolean();
+        long[] values = new long[in.readUnsignedShort()];
+        int entries = in.readUnsignedShort();
+        for (int i = 0; i < entries; i++) {
+            int option = in.readUnsignedShort();
+            if (option >= values.length) {
+                throw new StreamCorruptedException("Unknown option " + option + " in tally update.");
+            }
+            values[option] = in.readLong();
+        }
+        return new TallyUpdate(version, full, values);
+    }
+}
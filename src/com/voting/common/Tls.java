@@ -0,0 +1,90 @@
+package com.voting.common;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Contextos TLS do servidor e dos terminais, a partir de keystores PKCS12 locais com
+ * certificados autoassinados (gerados com o {@code keytool}; ver o README).
+ *
+ * Cada processo cria o seu {@link SSLContext} uma única vez e o reaproveita em todas as
+ * conexões: é no contexto que ficam o cache de sessões do servidor e os tickets recebidos
+ * pelo cliente. Um terminal que reconecta ao mesmo host e porta retoma a sessão anterior
+ * (TLS 1.3 com ticket, ou id de sessão no TLS 1.2) e troca o handshake completo, com
+ * assinatura e acordo de chaves, por um handshake abreviado.
+ */
+public final class Tls {
+
+    private Tls() {
+    }
+
+    /**
+     * Contexto do servidor: apresenta o certificado de {@code keyStore} e confia nos
+     * certificados de {@code trustStore} (usado quando o servidor conecta aos outros nós do cluster).
+     *
+     * @param sessionTimeoutSeconds por quanto tempo uma sessão pode ser retomada
+     * @param sessionCacheSize sessões guardadas no servidor; os tickets do TLS 1.3 não ocupam este cache
+     */
+    public static SSLContext serverContext(Path keyStore, char[] password, Path trustStore,
+                                           int sessionTimeoutSeconds, int sessionCacheSize) throws IOException {
+        try {
+            KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keys.init(load(keyStore, password), password);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keys.getKeyManagers(), trustManagers(trustStore, password), null);
+            context.getServerSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+            context.getServerSessionContext().setSessionCacheSize(sessionCacheSize);
+            // As conexões do servidor aos outros nós também retomam a sessão
+            context.getClientSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("TLS not available with " + keyStore + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Contexto de um terminal: só confia nos certificados de {@code trustStore}.
+     */
+    public static SSLContext clientContext(Path trustStore, char[] password) throws IOException {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trustManagers(trustStore, password), null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("TLS not available with " + trustStore + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Abre o TLS sobre um socket já conectado. O host e a porta identificam a sessão para a
+     * retomada e o host precisa constar no certificado do servidor (CN ou SAN).
+     * O handshake acontece no primeiro envio.
+     */
+    public static SSLSocket wrap(SSLContext context, Socket connected, String host, int port) throws IOException {
+        SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(connected, host, port, true);
+        SSLParameters parameters = socket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(parameters);
+        return socket;
+    }
+
+    private static TrustManager[] trustManagers(Path trustStore, char[] password) throws IOException, GeneralSecurityException {
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(load(trustStore, password));
+        return trust.getTrustManagers();
+    }
+
+    private static KeyStore load(Path path, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(path)) {
+            store.load(in, password);
+        }
+        return store;
+    }
+}
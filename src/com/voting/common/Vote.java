@@ -9,19 +9,81 @@ import java.io.Serializable;
 public class Vote implements Serializable {
   private static final long serialVersionUID = 1L;
 
+  // Null quando o voto chegou pelo protocolo binário: o texto só é montado se alguém pedir
   private final String cpf;
   private final String chosenOption;
 
+  // CPF já conferido (Cpf.INVALID se não é válido). O protocolo binário preenche direto,
+  // sem passar por texto; o caminho antigo (ObjectStream) lê o texto uma vez no construtor.
+  private final transient long cpfNumber;
+
+  // Posição da opção na cédula, quando conhecida (protocolo binário); -1 = procurar pelo texto.
+  // Não vai na serialização Java, então o formato dos clientes antigos não muda.
+  private final transient int optionIndex;
+
+  // Chave de idempotência escolhida pelo terminal (0 = sem chave). Reenviar o mesmo voto
+  // com a mesma chave devolve o resultado original em vez de "CPF já votou".
+  private final transient long idempotencyKey;
+
   public Vote(String cpf, String chosenOption) {
+    this(cpf, chosenOption, -1);
+  }
+
+  public Vote(String cpf, String chosenOption, int optionIndex) {
+    this(cpf, chosenOption, optionIndex, 0);
+  }
+
+  public Vote(String cpf, String chosenOption, int optionIndex, long idempotencyKey) {
     this.cpf = cpf;
+    this.cpfNumber = Cpf.parse(cpf);
+    this.chosenOption = chosenOption;
+    this.optionIndex = optionIndex;
+    this.idempotencyKey = idempotencyKey;
+  }
+
+  /**
+   * Voto com o CPF já como número (protocolo binário, fila do terminal).
+   * Um CPF inválido é guardado como texto para aparecer nos logs como chegou.
+   */
+  public Vote(long cpf, String chosenOption, int optionIndex, long idempotencyKey) {
+    boolean valid = Cpf.isValid(cpf);
+    this.cpf = valid ? null : Long.toString(cpf);
+    this.cpfNumber = valid ? cpf : Cpf.INVALID;
     this.chosenOption = chosenOption;
+    this.optionIndex = optionIndex;
+    this.idempotencyKey = idempotencyKey;
   }
 
   public String getCpf() {
-    return cpf;
+    return cpf != null ? cpf : Cpf.format(cpfNumber);
+  }
+
+  /**
+   * CPF como long, ou {@link Cpf#INVALID}; não cria Strings.
+   */
+  public long getCpfNumber() {
+    return cpfNumber;
   }
 
   public String getChosenOption() {
     return chosenOption;
   }
-}
\ No newline at end of file
+
+  public int getOptionIndex() {
+    return optionIndex;
+  }
+
+  public long getIdempotencyKey() {
+    return idempotencyKey;
+  }
+
+  // O formato serializado sempre leva o CPF como texto
+  private Object writeReplace() {
+    return cpf != null ? this : new Vote(getCpf(), chosenOption);
+  }
+
+  // Campo transient voltaria como 0 (uma opção válida) na desserialização
+  private Object readResolve() {
+    return new Vote(cpf, chosenOption);
+  }
+}
@@ -0,0 +1,63 @@
+package com.voting.common;
+
+import java.io.*;
+
+/**
+ * Codifica um Vote em 18 bytes: CPF como long, o ordinal da opção como short e a
+ * chave de idempotência como long (a chave só existe a partir da versão 6 do protocolo;
+ * antes, o voto tinha 10 bytes). O ordinal é a posição da opção em {@link ElectionData#getOptions()}.
+ * Dentro de uma sessão o voto é precedido pelo id do pedido (int).
+ */
+public final class VoteCodec {
+    public static final int PAYLOAD_SIZE = Long.BYTES + Short.BYTES + Long.BYTES;
+
+    private VoteCodec() {
+    }
+
+    public static byte[] encode(Vote vote, ElectionData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(PAYLOAD_SIZE);
+        writeVote(new DataOutputStream(bytes), vote, data);
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encode(VoteRequest request, ElectionData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Integer.BYTES + PAYLOAD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(request.getRequestId());
+        writeVote(out, request.getVote(), data);
+        return bytes.toByteArray();
+    }
+
+    public static VoteRequest decode(WireProtocol.Frame frame, ElectionData data) throws IOException {
+        return decode(frame, data, WireProtocol.VERSION);
+    }
+
+    /**
+     * Decodifica tanto MSG_VOTE (sem id) quanto MSG_SESSION_VOTE, no formato da versão negociada.
+     */
+    public static VoteRequest decode(WireProtocol.Frame frame, ElectionData data, int version) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_VOTE, WireProtocol.MSG_SESSION_VOTE).payload();
+        int requestId = frame.getType() == WireProtocol.MSG_SESSION_VOTE
+                ? in.readInt()
+                : VoteRequest.NO_REQUEST_ID;
+        return new VoteRequest(requestId, readVote(in, data, version));
+    }
+
+    static void writeVote(DataOutputStream out, Vote vote, ElectionData data) throws IOException {
+        long cpf = vote.getCpfNumber();
+        if (cpf == Cpf.INVALID) throw new StreamCorruptedException("Invalid CPF.");
+        out.writeLong(cpf);
+        int ordinal = vote.getOptionIndex();
+        out.writeShort(ordinal >= 0 ? ordinal : data.getOptions().indexOf(vote.getChosenOption()));
+        out.writeLong(vote.getIdempotencyKey());
+    }
+
+    static Vote readVote(DataInputStream in, ElectionData data, int version) throws IOException {
+        long cpf = in.readLong();
+        int ordinal = in.readShort();
+        long key = version >= 6 ? in.readLong() : 0;
+        // CPF ou ordinal inválidos seguem adiante como estão e são recusados pelo servidor
+        if (ordinal < 0 || ordinal >= data.getOptions().size()) return new Vote(cpf, "#" + ordinal, -1, key);
+        return new Vote(cpf, data.getOptions().get(ordinal), ordinal, key);
+    }
+}
@@ -0,0 +1,104 @@
+package com.voting.common;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Um voto (ou um lote de votos) enviado dentro de uma sessão, identificado para casar
+ * com a resposta. Votos avulsos (um por conexão) usam {@link #NO_REQUEST_ID}.
+ * Entre nós de um cluster também trafegam lotes repassados e pedidos de contagem.
+ * Um observador pede para acompanhar a apuração com uma inscrição.
+ */
+public final class VoteRequest {
+    public static final int NO_REQUEST_ID = -1;
+
+    private enum Kind { SINGLE, BATCH, FORWARDED_BATCH, TALLY_QUERY, SUBSCRIPTION, PING }
+
+    private final int requestId;
+    private final List<Vote> votes;
+    private final Kind kind;
+
+    public VoteRequest(int requestId, Vote vote) {
+        this(requestId, Collections.singletonList(vote), Kind.SINGLE);
+    }
+
+    private VoteRequest(int requestId, List<Vote> votes, Kind kind) {
+        this.requestId = requestId;
+        this.votes = votes;
+        this.kind = kind;
+    }
+
+    /**
+     * Lote de votos respondido com um código por voto (ver {@link BatchResult}).
+     */
+    public static VoteRequest batch(int requestId, List<Vote> votes) {
+        return new VoteRequest(requestId, Collections.unmodifiableList(votes), Kind.BATCH);
+    }
+
+    /**
+     * Lote repassado por outro nó do cluster: o destino é o dono dos CPFs e não repassa de novo.
+     */
+    public static VoteRequest forwardedBatch(int requestId, List<Vote> votes) {
+        return new VoteRequest(requestId, Collections.unmodifiableList(votes), Kind.FORWARDED_BATCH);
+    }
+
+    /**
+     * Pedido da contagem local de um nó, feito pelo coordenador do cluster.
+     */
+    public static VoteRequest tallyQuery(int requestId) {
+        return new VoteRequest(requestId, Collections.emptyList(), Kind.TALLY_QUERY);
+    }
+
+    /**
+     * Inscrição de um observador: a conexão passa a receber a apuração em tempo real.
+     */
+    public static VoteRequest subscription() {
+        return new VoteRequest(NO_REQUEST_ID, Collections.emptyList(), Kind.SUBSCRIPTION);
+    }
+
+    /**
+     * Keep-alive de uma conexão persistente ociosa; não tem resposta.
+     */
+    public static VoteRequest ping() {
+        return new VoteRequest(NO_REQUEST_ID, Collections.emptyList(), Kind.PING);
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * O voto de um pedido simples.
+     */
+    public Vote getVote() {
+        return votes.get(0);
+    }
+
+    public List<Vote> getVotes() {
+        return votes;
+    }
+
+    public boolean isBatch() {
+        return kind == Kind.BATCH || kind == Kind.FORWARDED_BATCH;
+    }
+
+    public boolean isForwarded() {
+        return kind == Kind.FORWARDED_BATCH;
+    }
+
+    public boolean isTallyQuery() {
+        return kind == Kind.TALLY_QUERY;
+    }
+
+    public boolean isSubscription() {
+        return kind == Kind.SUBSCRIPTION;
+    }
+
+    public boolean isPing() {
+        return kind == Kind.PING;
+    }
+
+    public boolean isSession() {
+        return requestId != NO_REQUEST_ID;
+    }
+}
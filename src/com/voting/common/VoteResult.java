@@ -0,0 +1,44 @@
+package com.voting.common;
+
+/**
+ * Resposta do servidor a um voto: o status e a mensagem mostrada ao eleitor.
+ * Em uma sessão, carrega também o id do pedido respondido.
+ */
+public final class VoteResult {
+    private final int requestId;
+    private final VoteStatus status;
+    private final String message;
+
+    public VoteResult(int requestId, VoteStatus status, String message) {
+        this.requestId = requestId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public VoteResult(VoteStatus status, String message) {
+        this(VoteRequest.NO_REQUEST_ID, status, message);
+    }
+
+    public VoteResult(VoteStatus status) {
+        this(status, status.getMessage());
+    }
+
+    /**
+     * Mesma resposta, associada ao pedido informado.
+     */
+    public VoteResult forRequest(int requestId) {
+        return new VoteResult(requestId, status, message);
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public VoteStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
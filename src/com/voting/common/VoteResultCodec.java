@@ -0,0 +1,42 @@
+package com.voting.common;
+
+import java.io.*;
+
+/**
+ * Codifica a resposta a um voto: código do {@link VoteStatus} e a mensagem para o eleitor.
+ * Respostas de sessão (MSG_SESSION_RESULT) começam com o id do pedido.
+ */
+public final class VoteResultCodec {
+
+    private VoteResultCodec() {
+    }
+
+    /**
+     * Gera o corpo do frame; use {@link #frameType} para saber com qual tipo enviá-lo.
+     */
+    public static byte[] encode(VoteResult result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (result.getRequestId() != VoteRequest.NO_REQUEST_ID) {
+            out.writeInt(result.getRequestId());
+        }
+        out.writeByte(result.getStatus().getCode());
+        out.writeUTF(result.getMessage());
+        return bytes.toByteArray();
+    }
+
+    public static byte frameType(VoteResult result) {
+        return result.getRequestId() == VoteRequest.NO_REQUEST_ID
+                ? WireProtocol.MSG_VOTE_RESULT
+                : WireProtocol.MSG_SESSION_RESULT;
+    }
+
+    public static VoteResult decode(WireProtocol.Frame frame) throws IOException {
+        DataInputStream in = frame.expect(WireProtocol.MSG_VOTE_RESULT, WireProtocol.MSG_SESSION_RESULT).payload();
+        int requestId = frame.getType() == WireProtocol.MSG_SESSION_RESULT
+                ? in.readInt()
+                : VoteRequest.NO_REQUEST_ID;
+        VoteStatus status = VoteStatus.fromCode(in.readUnsignedByte());
+        return new VoteResult(requestId, status, in.readUTF());
+    }
+}
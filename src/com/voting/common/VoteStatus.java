@@ -0,0 +1,41 @@
+package com.voting.common;
+
+/**
+ * Resultado do processamento de um voto, com o código usado no protocolo binário.
+ */
+public enum VoteStatus {
+    SUCCESS(0, "SUCCESS: Your vote has been registered."),
+    ALREADY_VOTED(1, "ERROR: This CPF has already voted."),
+    INVALID_OPTION(2, "ERROR: Invalid voting option."),
+    SERVER_BUSY(3, "ERROR: Server busy, please try again in a few seconds."),
+    ERROR(4, "ERROR: The vote could not be processed."),
+    INVALID_CPF(5, "ERROR: Invalid CPF."),
+    NOT_PRIMARY(6, "ERROR: This server is a standby, please connect to the primary."),
+    UNKNOWN_ELECTION(7, "ERROR: Unknown election.");
+
+    private final int code;
+    private final String message;
+
+    VoteStatus(int code, String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Mensagem padrão mostrada ao eleitor (mesmo texto usado pelos clientes antigos).
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public static VoteStatus fromCode(int code) {
+        for (VoteStatus status : values()) {
+            if (status.code == code) return status;
+        }
+        return ERROR;
+    }
+}
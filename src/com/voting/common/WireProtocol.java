@@ -0,0 +1,156 @@
+package com.voting.common;
+
+import java.io.*;
+
+/**
+ * Protocolo binário entre cliente e servidor.
+ *
+ * O cliente abre a conexão enviando MAGIC (4 bytes) e a versão (1 byte).
+ * Depois disso toda mensagem é um frame: tamanho (int), tipo (byte) e o corpo.
+ * Os primeiros bytes nunca são 0xACED, então o servidor distingue este protocolo
+ * da serialização Java usada pelos clientes antigos.
+ *
+ * Versão 1: um voto (MSG_VOTE) por conexão.
+ * Versão 2: sessões; o terminal envia vários MSG_SESSION_VOTE com id na mesma conexão
+ * e encerra com MSG_BYE. Lotes (MSG_BATCH_VOTE) podem ser enviados em pipeline:
+ * o servidor responde na ordem de chegada, sem o cliente precisar esperar cada resposta.
+ * Versão 3: mensagens entre os nós de um cluster. Um nó repassa ao dono da partição
+ * os votos que não são seus (MSG_FORWARD_BATCH, processado sem novo repasse) e o
+ * coordenador pede a contagem de cada nó (MSG_TALLY_QUERY / MSG_TALLY).
+ * Versão 4: observadores (painéis, imprensa). Depois dos dados da eleição o observador
+ * envia MSG_SUBSCRIBE e passa a receber MSG_TALLY_UPDATE: primeiro a contagem completa,
+ * depois só as diferenças de cada publicação, numeradas em sequência.
+ * Versão 5: várias eleições no mesmo servidor. O cabeçalho traz, depois da versão,
+ * o id da eleição (UTF); versões anteriores votam na eleição {@link #DEFAULT_ELECTION}.
+ * Versão 6: cada voto leva uma chave de idempotência (long, 0 = sem chave) depois do ordinal.
+ * Um voto reenviado com a mesma chave recebe o resultado original.
+ * Versão 7: MSG_PING, sem corpo e sem resposta. Uma conexão persistente (sessão de terminal,
+ * ligação entre nós) envia um ping quando fica {@link #PING_INTERVAL_MILLIS} sem escrever,
+ * para o servidor não encerrá-la como ociosa.
+ */
+public final class WireProtocol {
+    public static final int MAGIC = 0x564F5445; // "VOTE"
+    public static final int VERSION = 7;
+
+    public static final String DEFAULT_ELECTION = "default";
+
+    public static final byte MSG_ELECTION_DATA = 1;
+    public static final byte MSG_VOTE = 2;
+    public static final byte MSG_VOTE_RESULT = 3;
+    public static final byte MSG_SESSION_VOTE = 4;
+    public static final byte MSG_SESSION_RESULT = 5;
+    public static final byte MSG_BYE = 6;
+    public static final byte MSG_BATCH_VOTE = 7;
+    public static final byte MSG_BATCH_RESULT = 8;
+    public static final byte MSG_FORWARD_BATCH = 9;
+    public static final byte MSG_TALLY_QUERY = 10;
+    public static final byte MSG_TALLY = 11;
+    public static final byte MSG_SUBSCRIBE = 12;
+    public static final byte MSG_TALLY_UPDATE = 13;
+    public static final byte MSG_PING = 14;
+
+    // Maior silêncio de uma conexão com keep-alive; o idleTimeoutMillis do servidor precisa ser maior
+    public static final long PING_INTERVAL_MILLIS = 20_000;
+
+    // Nenhum frame legítimo chega perto disso; evita alocar memória a pedido do cliente
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Indica se os dois primeiros bytes da conexão são o cabeçalho de um ObjectOutputStream.
+     */
+    public static boolean isJavaSerialization(int firstByte, int secondByte) {
+        return firstByte == 0xAC && secondByte == 0xED;
+    }
+
+    public static void writeHello(DataOutputStream out) throws IOException {
+        writeHello(out, DEFAULT_ELECTION);
+    }
+
+    public static void writeHello(DataOutputStream out, String electionId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(electionId);
+        out.flush();
+    }
+
+    /**
+     * Lê o cabeçalho enviado pelo cliente e devolve a versão pedida.
+     */
+    public static int readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Unknown protocol.");
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Unsupported protocol version " + version + ".");
+        }
+        return version;
+    }
+
+    /**
+     * Id da eleição escolhida pelo cliente, lido logo depois de {@link #readHello}.
+     */
+    public static String readElectionId(DataInputStream in, int version) throws IOException {
+        return version >= 5 ? in.readUTF() : DEFAULT_ELECTION;
+    }
+
+    public static void writeBye(DataOutputStream out) throws IOException {
+        writeFrame(out, MSG_BYE, new byte[0]);
+    }
+
+    public static void writePing(DataOutputStream out) throws IOException {
+        writeFrame(out, MSG_PING, new byte[0]);
+    }
+
+    public static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(payload.length + 1);
+        out.writeByte(type);
+        out.write(payload);
+        out.flush();
+    }
+
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new StreamCorruptedException("Invalid frame length " + length + ".");
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Um frame recebido: tipo e corpo ainda não decodificado.
+     */
+    public static final class Frame {
+        private final byte type;
+        private final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public DataInputStream payload() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+
+        /**
+         * Garante que o frame é de um dos tipos esperados antes de decodificá-lo.
+         */
+        public Frame expect(byte... expectedTypes) throws IOException {
+            for (byte expectedType : expectedTypes) {
+                if (type == expectedType) return this;
+            }
+            throw new StreamCorruptedException("Unexpected message type " + type + ".");
+        }
+    }
+}
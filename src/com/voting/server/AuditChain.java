@@ -0,0 +1,552 @@
+package com.voting.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trilha de auditoria à prova de adulteração de uma eleição ({@code votes.audit}, ao lado do journal).
+ *
+ * Cada voto gravado no journal recebe um número de sequência e um instante em nanossegundos,
+ * na ordem em que entrou na trilha (o instante nunca diminui ao longo da sequência). Os votos
+ * são agrupados em lotes; cada lote guarda a raiz da árvore de Merkle (SHA-256) das suas folhas
+ * e um hash que encadeia essa raiz ao hash do lote anterior. Alterar, remover ou reordenar um voto
+ * muda a raiz do lote e todos os hashes seguintes. Uma prova de inclusão (os irmãos no caminho
+ * da folha até a raiz) mostra que um CPF está na trilha sem expor os outros votos do lote.
+ *
+ * O hash fica fora do caminho do voto: {@link #append} só põe o voto numa fila, e uma thread
+ * junta o que chegou, calcula folhas, raiz e encadeamento e grava o lote de uma vez.
+ * O journal continua sendo a fonte da verdade: votos que estavam na fila numa queda são
+ * encadeados de novo ao reabrir ({@link #appendMissing}).
+ *
+ * Formato: MAGIC, versão e id da eleição; depois, por lote: int quantidade, long primeira
+ * sequência, as folhas (long instante em ns, long CPF, short opção), a raiz e o hash do lote.
+ * <ul>
+ * <li>folha = SHA-256(0x00, sequência, instante, CPF, opção);</li>
+ * <li>nó = SHA-256(0x01, esquerdo, direito); um nó sem par sobe sem alteração;</li>
+ * <li>lote = SHA-256(hash anterior, primeira sequência, quantidade, raiz); antes do primeiro
+ * lote, o hash anterior é SHA-256 do id da eleição.</li>
+ * </ul>
+ */
+class AuditChain implements Closeable {
+    private static final int MAGIC = 0x564F4143; // "VOAC"
+    private static final int FORMAT_VERSION = 1;
+
+    static final int HASH_SIZE = 32;
+    static final int LEAF_SIZE = Long.BYTES + Long.BYTES + Short.BYTES;
+    private static final int BATCH_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    // Folhas por lote, no máximo (árvore de até 13 níveis)
+    static final int MAX_BATCH = 4096;
+
+    // Quanto o primeiro voto de um lote espera por outros antes de o lote ser fechado
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // O arquivo da trilha vai para o disco a cada segundo; o que se perder numa queda volta pelo journal
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Na reabertura, votos aceitos até este tanto antes do último encadeado podem ter ficado na fila
+    private static final long RECOVERY_WINDOW_MILLIS = 60_000;
+
+    private final Path path;
+    private final String electionId;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Relógio em nanossegundos desde a época: instante da abertura mais o nanoTime decorrido
+    private final long baseEpochNanos = System.currentTimeMillis() * 1_000_000L;
+    private final long baseNanoTime = System.nanoTime();
+
+    // Escritos só na abertura e pela thread dos lotes
+    private byte[] head;
+    private long lastNanos;
+    private volatile long nextSequence;
+
+    private AuditChain(Path path, String electionId, FileChannel channel, ScanResult tail) {
+        this.path = path;
+        this.electionId = electionId;
+        this.channel = channel;
+        this.head = tail.head;
+        this.lastNanos = tail.lastNanos;
+        this.nextSequence = tail.nextSequence;
+        this.writer = new Thread(this::writeLoop, "audit-chain-" + electionId);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Abre (ou cria) a trilha e confere o encadeamento de todos os lotes. Um lote incompleto
+     * no fim do arquivo (queda no meio da gravação) é descartado.
+     *
+     * @throws IOException se um lote completo não fecha com o anterior: a trilha foi alterada
+     *                     e o servidor não continua por cima dela
+     */
+    static AuditChain open(Path path, String electionId) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(fileHeader(electionId)));
+                channel.force(true);
+            }
+            ScanResult tail = scan(channel, null);
+            if (!electionId.equals(tail.electionId)) {
+                throw new IOException("Audit chain " + path + " belongs to election " + tail.electionId + ".");
+            }
+            if (tail.problem != null) {
+                if (!tail.problemAtEnd) {
+                    throw new IOException("Audit chain " + path + " was tampered with: " + tail.problem);
+                }
+                System.out.println("Audit chain: discarding " + (channel.size() - tail.validLength)
+                        + " bytes of an incomplete batch.");
+                channel.truncate(tail.validLength);
+                channel.force(true);
+            }
+            channel.position(tail.validLength);
+            return new AuditChain(path, electionId, channel, tail);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Agenda o encadeamento de um voto já gravado no journal.
+     */
+    void append(AuditEntry entry) {
+        if (running) queue.add(new Pending(entry, nowNanos()));
+    }
+
+    void appendAll(List<AuditEntry> entries) {
+        if (!running) return;
+        long nanos = nowNanos();
+        for (AuditEntry entry : entries) queue.add(new Pending(entry, nanos));
+    }
+
+    private long nowNanos() {
+        return baseEpochNanos + (System.nanoTime() - baseNanoTime);
+    }
+
+    /**
+     * Encadeia os votos do ledger que não chegaram à trilha: os que estavam na fila numa queda
+     * ou, na primeira abertura de um journal antigo, todos. Deve rodar antes de a eleição aceitar votos.
+     */
+    void appendMissing(VoteLedger ledger) throws IOException {
+        long chained = nextSequence;
+        if (ledger.totalVotes() <= chained) return;
+
+        // Só o final da trilha pode ter ficado para trás; os CPFs dele bastam para achar os que faltam
+        long fromMillis = chained == 0 ? Long.MIN_VALUE : lastNanos / 1_000_000L - RECOVERY_WINDOW_MILLIS;
+        Set<Long> recent = new HashSet<>();
+        if (chained > 0) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                scan(in, (batch, previous) -> {
+                    batch.readLeaves(in);
+                    for (int i = 0; i < batch.size; i++) {
+                        if (batch.epochNanos[i] / 1_000_000L >= fromMillis) recent.add(batch.cpfs[i]);
+                    }
+                });
+            }
+        }
+        List<AuditEntry> missing = new ArrayList<>();
+        ledger.forEachVote((cpf, option, epochMillis) -> {
+            if (epochMillis >= fromMillis && !recent.contains(cpf)) missing.add(new AuditEntry(cpf, option, epochMillis));
+        });
+        missing.sort(Comparator.comparingLong(AuditEntry::getEpochMillis).thenComparingLong(AuditEntry::getCpfNumber));
+        for (AuditEntry entry : missing) {
+            queue.add(new Pending(entry, entry.getEpochMillis() * 1_000_000L));
+        }
+        System.out.println("Audit chain for election " + electionId + ": chaining " + missing.size()
+                + " votes found in the journal but not in the chain");
+    }
+
+    /**
+     * Votos aguardando o lote (para acompanhar se o encadeamento acompanha a entrada de votos).
+     */
+    int getBacklog() {
+        return queue.size();
+    }
+
+    long getChainedVotes() {
+        return nextSequence;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        MessageDigest sha = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BATCH_HEADER_SIZE + MAX_BATCH * LEAF_SIZE + 2 * HASH_SIZE);
+        long lastForce = System.nanoTime();
+        boolean dirty = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    collectBatch(batch);
+                    writeBatch(batch, sha, buffer);
+                    batch.clear();
+                    dirty = true;
+                }
+                if (dirty && System.nanoTime() - lastForce >= FORCE_INTERVAL_NANOS) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    dirty = false;
+                }
+            } catch (IOException e) {
+                // A votação continua: o journal tem os votos e a trilha é refeita a partir dele ao reabrir
+                System.err.println("Audit chain write failed for election " + electionId + ": " + e.getMessage());
+                running = false;
+                queue.clear();
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Junta mais votos ao lote até encher ou até passar a janela do primeiro.
+     */
+    private void collectBatch(List<Pending> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + BATCH_WINDOW_NANOS;
+        while (batch.size() < MAX_BATCH) {
+            if (queue.drainTo(batch, MAX_BATCH - batch.size()) > 0) continue;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) return;
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<Pending> batch, MessageDigest sha, ByteBuffer buffer) throws IOException {
+        int size = batch.size();
+        long firstSequence = nextSequence;
+        byte[][] leaves = new byte[size][];
+        ByteBuffer scratch = ByteBuffer.allocate(LEAF_SIZE + Long.BYTES);
+
+        buffer.clear();
+        buffer.putInt(size).putLong(firstSequence);
+        for (int i = 0; i < size; i++) {
+            Pending pending = batch.get(i);
+            // Duas threads podem ler o relógio fora da ordem em que entraram na fila
+            long nanos = Math.max(pending.epochNanos, lastNanos);
+            lastNanos = nanos;
+            long cpf = pending.entry.getCpfNumber();
+            int option = pending.entry.getOption();
+            buffer.putLong(nanos).putLong(cpf).putShort((short) option);
+            leaves[i] = leafHash(sha, scratch, firstSequence + i, nanos, cpf, option);
+        }
+        byte[] root = merkleRoot(sha, leaves);
+        byte[] hash = batchHash(sha, head, firstSequence, size, root);
+        buffer.put(root).put(hash).flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+
+        head = hash;
+        nextSequence = firstSequence + size;
+    }
+
+    /**
+     * Para de aceitar votos, encadeia o que estava na fila e fecha o arquivo.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!channel.isOpen()) return;
+        channel.force(false);
+        channel.close();
+        System.out.println("Audit chain for election " + electionId + ": " + nextSequence + " votes, head " + toHex(head));
+    }
+
+    // ---- Hashes -------------------------------------------------------------------------
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM tem SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] leafHash(MessageDigest sha, ByteBuffer scratch, long sequence, long epochNanos, long cpf, int option) {
+        scratch.clear();
+        scratch.putLong(sequence).putLong(epochNanos).putLong(cpf).putShort((short) option).flip();
+        sha.update((byte) 0);
+        sha.update(scratch);
+        return sha.digest();
+    }
+
+    static byte[] nodeHash(MessageDigest sha, byte[] left, byte[] right) {
+        sha.update((byte) 1);
+        sha.update(left);
+        sha.update(right);
+        return sha.digest();
+    }
+
+    static byte[] merkleRoot(MessageDigest sha, byte[][] leaves) {
+        byte[][] level = leaves.clone();
+        int size = level.length;
+        while (size > 1) {
+            int next = 0;
+            for (int i = 0; i < size; i += 2) {
+                level[next++] = i + 1 < size ? nodeHash(sha, level[i], level[i + 1]) : level[i];
+            }
+            size = next;
+        }
+        return level[0];
+    }
+
+    /**
+     * Irmãos no caminho da folha {@code index} até a raiz, de baixo para cima. O lado de cada
+     * irmão sai do índice e do tamanho do lote, então a prova não precisa guardá-lo.
+     */
+    static List<byte[]> merklePath(MessageDigest sha, byte[][] leaves, int index) {
+        List<byte[]> path = new ArrayList<>();
+        byte[][] level = leaves.clone();
+        int size = level.length;
+        while (size > 1) {
+            int sibling = index ^ 1;
+            if (sibling < size) path.add(level[sibling]);
+            int next = 0;
+            for (int i = 0; i < size; i += 2) {
+                level[next++] = i + 1 < size ? nodeHash(sha, level[i], level[i + 1]) : level[i];
+            }
+            size = next;
+            index >>= 1;
+        }
+        return path;
+    }
+
+    /**
+     * Refaz a raiz a partir de uma folha e do caminho de {@link #merklePath}.
+     */
+    static byte[] rootFromPath(MessageDigest sha, byte[] leaf, int index, int size, List<byte[]> path) {
+        byte[] node = leaf;
+        int used = 0;
+        while (size > 1) {
+            if ((index & 1) == 1) {
+                node = nodeHash(sha, path.get(used++), node);
+            } else if (index + 1 < size) {
+                node = nodeHash(sha, node, path.get(used++));
+            }
+            index >>= 1;
+            size = (size + 1) / 2;
+        }
+        return used == path.size() ? node : null;
+    }
+
+    static byte[] batchHash(MessageDigest sha, byte[] previous, long firstSequence, int size, byte[] root) {
+        sha.update(previous);
+        sha.update(ByteBuffer.allocate(BATCH_HEADER_SIZE).putLong(firstSequence).putInt(size).array());
+        sha.update(root);
+        return sha.digest();
+    }
+
+    static byte[] genesis(String electionId) {
+        return sha256().digest(electionId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    // ---- Leitura --------------------------------------------------------------------------
+
+    private static byte[] fileHeader(String electionId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(electionId);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Recebe cada lote cujo hash fecha com o anterior; as folhas só são lidas se pedidas.
+     */
+    interface BatchVisitor {
+        void visit(Batch batch, byte[] previousHash) throws IOException;
+    }
+
+    /**
+     * Um lote gravado: cabeçalho, raiz e hash; folhas depois de {@link #readLeaves}.
+     */
+    static final class Batch {
+        final long firstSequence;
+        final int size;
+        final long leavesOffset;
+        final byte[] root;
+        final byte[] hash;
+        long[] epochNanos;
+        long[] cpfs;
+        int[] options;
+
+        Batch(long firstSequence, int size, long leavesOffset, byte[] root, byte[] hash) {
+            this.firstSequence = firstSequence;
+            this.size = size;
+            this.leavesOffset = leavesOffset;
+            this.root = root;
+            this.hash = hash;
+        }
+
+        void readLeaves(FileChannel channel) throws IOException {
+            ByteBuffer leaves = ByteBuffer.allocate(size * LEAF_SIZE);
+            readFully(channel, leaves, leavesOffset);
+            epochNanos = new long[size];
+            cpfs = new long[size];
+            options = new int[size];
+            for (int i = 0; i < size; i++) {
+                epochNanos[i] = leaves.getLong();
+                cpfs[i] = leaves.getLong();
+                options[i] = leaves.getShort();
+            }
+        }
+
+        byte[][] leafHashes(MessageDigest sha) {
+            ByteBuffer scratch = ByteBuffer.allocate(LEAF_SIZE + Long.BYTES);
+            byte[][] hashes = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = leafHash(sha, scratch, firstSequence + i, epochNanos[i], cpfs[i], options[i]);
+            }
+            return hashes;
+        }
+    }
+
+    /**
+     * Resultado de {@link #scan}: até onde a trilha é válida e o estado no fim dessa parte.
+     */
+    static final class ScanResult {
+        String electionId;
+        long validLength;
+        long batches;
+        long nextSequence;
+        long lastNanos;
+        byte[] head;
+        // Motivo de a leitura ter parado antes do fim do arquivo; null se a trilha inteira fecha
+        String problem;
+        // Verdadeiro se o problema é um lote truncado no fim do arquivo (queda durante a gravação)
+        boolean problemAtEnd;
+    }
+
+    /**
+     * Percorre os lotes conferindo sequência e encadeamento (não as folhas: isso é do
+     * {@link AuditVerifier}). Para no primeiro lote inválido.
+     */
+    static ScanResult scan(FileChannel channel, BatchVisitor visitor) throws IOException {
+        ScanResult result = new ScanResult();
+        long fileSize = channel.size();
+        ByteBuffer fixed = ByteBuffer.allocate(Integer.BYTES * 2 + Short.BYTES);
+        readFully(channel, fixed, 0);
+        if (fixed.getInt() != MAGIC) throw new StreamCorruptedException("Not an audit chain file.");
+        int version = fixed.getInt();
+        if (version != FORMAT_VERSION) throw new StreamCorruptedException("Unsupported audit chain version " + version + ".");
+        ByteBuffer id = ByteBuffer.allocate(fixed.getShort() & 0xFFFF);
+        readFully(channel, id, fixed.capacity());
+        result.electionId = new String(id.array(), StandardCharsets.UTF_8);
+        result.validLength = fixed.capacity() + id.capacity();
+        result.head = genesis(result.electionId);
+
+        MessageDigest sha = sha256();
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        ByteBuffer trailer = ByteBuffer.allocate(2 * HASH_SIZE);
+        ByteBuffer lastLeaf = ByteBuffer.allocate(LEAF_SIZE);
+        long position = result.validLength;
+        while (position < fileSize) {
+            if (fileSize - position < BATCH_HEADER_SIZE) {
+                return stop(result, "truncated batch header", true);
+            }
+            header.clear();
+            readFully(channel, header, position);
+            int size = header.getInt();
+            long firstSequence = header.getLong();
+            long end = position + BATCH_HEADER_SIZE + (long) size * LEAF_SIZE + 2 * HASH_SIZE;
+            if (size <= 0 || size > MAX_BATCH) {
+                // Zeros deixados por uma queda também caem aqui; só é o fim se não cabe outro lote depois
+                return stop(result, "invalid batch size " + size + " at byte " + position,
+                        fileSize - position <= BATCH_HEADER_SIZE + MAX_BATCH * LEAF_SIZE + 2 * HASH_SIZE);
+            }
+            if (end > fileSize) {
+                return stop(result, "truncated batch at byte " + position, true);
+            }
+            trailer.clear();
+            readFully(channel, trailer, end - 2 * HASH_SIZE);
+            byte[] root = new byte[HASH_SIZE];
+            byte[] hash = new byte[HASH_SIZE];
+            trailer.get(root).get(hash);
+            // Uma gravação interrompida não deixa um lote de tamanho completo: daqui em diante,
+            // mesmo no último lote do arquivo, a falha é adulteração e não final de queda
+            if (firstSequence != result.nextSequence) {
+                return stop(result, "batch at byte " + position + " starts at sequence " + firstSequence
+                        + ", expected " + result.nextSequence, false);
+            }
+            if (!MessageDigest.isEqual(hash, batchHash(sha, result.head, firstSequence, size, root))) {
+                return stop(result, "batch at sequence " + firstSequence + " does not chain to the previous one", false);
+            }
+
+            Batch batch = new Batch(firstSequence, size, position + BATCH_HEADER_SIZE, root, hash);
+            if (visitor != null) visitor.visit(batch, result.head);
+            lastLeaf.clear();
+            readFully(channel, lastLeaf, batch.leavesOffset + (long) (size - 1) * LEAF_SIZE);
+            result.lastNanos = lastLeaf.getLong();
+            result.head = hash;
+            result.nextSequence = firstSequence + size;
+            result.batches++;
+            result.validLength = position = end;
+        }
+        return result;
+    }
+
+    private static ScanResult stop(ScanResult result, String problem, boolean atEnd) {
+        result.problem = problem;
+        result.problemAtEnd = atEnd;
+        return result;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException();
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Um voto aceito e o instante em que entrou na fila da trilha.
+     */
+    private static final class Pending {
+        final AuditEntry entry;
+        final long epochNanos;
+
+        Pending(AuditEntry entry, long epochNanos) {
+            this.entry = entry;
+            this.epochNanos = epochNanos;
+        }
+    }
+}
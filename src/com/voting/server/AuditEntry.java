@@ -0,0 +1,60 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Um voto aceito: CPF, opção escolhida (posição na cédula), o instante do voto e a
+ * chave de idempotência enviada pelo terminal (0 se ele não mandou nenhuma).
+ * A DATA/HORA só é formatada quando alguém a exibe, fora do caminho do voto.
+ */
+public final class AuditEntry {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final long cpf;
+    private final int option;
+    private final long epochMillis;
+    private final long idempotencyKey;
+
+    public AuditEntry(long cpf, int option, long epochMillis) {
+        this(cpf, option, epochMillis, 0);
+    }
+
+    public AuditEntry(long cpf, int option, long epochMillis, long idempotencyKey) {
+        this.cpf = cpf;
+        this.option = option;
+        this.epochMillis = epochMillis;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * CPF com os 11 dígitos (zeros à esquerda preservados).
+     */
+    public String getCpf() {
+        return Cpf.format(cpf);
+    }
+
+    public long getCpfNumber() {
+        return cpf;
+    }
+
+    public int getOption() {
+        return option;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public long getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getTimeStamp() {
+        return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+}
@@ -0,0 +1,118 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Ferramenta dos auditores para a trilha de uma eleição ({@link AuditChain}); roda com o
+ * servidor parado ou sobre uma cópia do arquivo.
+ *
+ * {@code AuditVerifier votes.audit} refaz todas as folhas, raízes e hashes e mostra o hash
+ * final, que pode ser comparado com o anunciado pelo servidor ao encerrar.
+ * {@code AuditVerifier votes.audit 123.456.789-09} mostra a prova de inclusão do voto desse
+ * CPF: a folha, os irmãos até a raiz do lote e o encadeamento com o lote anterior.
+ */
+public class AuditVerifier {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AuditVerifier <file.audit> [cpf]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        boolean ok = args.length > 1 ? prove(path, args[1]) : verify(path);
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean verify(Path path) throws IOException {
+        MessageDigest sha = AuditChain.sha256();
+        String[] problem = new String[1];
+        long[] lastNanos = {Long.MIN_VALUE};
+        AuditChain.ScanResult result;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            result = AuditChain.scan(in, (batch, previous) -> {
+                if (problem[0] != null) return;
+                batch.readLeaves(in);
+                if (!MessageDigest.isEqual(batch.root, AuditChain.merkleRoot(sha, batch.leafHashes(sha)))) {
+                    problem[0] = "votes of the batch at sequence " + batch.firstSequence + " do not match its Merkle root";
+                }
+                for (int i = 0; i < batch.size && problem[0] == null; i++) {
+                    if (batch.epochNanos[i] < lastNanos[0]) {
+                        problem[0] = "timestamp goes backwards at sequence " + (batch.firstSequence + i);
+                    }
+                    lastNanos[0] = batch.epochNanos[i];
+                }
+            });
+        }
+        if (problem[0] == null && result.problem != null) {
+            problem[0] = result.problem + (result.problemAtEnd ? " (incomplete write at the end of the file)" : "");
+        }
+        System.out.println("Election: " + result.electionId);
+        System.out.println("Batches:  " + result.batches);
+        System.out.println("Votes:    " + result.nextSequence);
+        System.out.println("Head:     " + AuditChain.toHex(result.head));
+        if (problem[0] != null) {
+            System.out.println("INVALID:  " + problem[0]);
+            return false;
+        }
+        System.out.println("OK");
+        return true;
+    }
+
+    private static boolean prove(Path path, String cpfText) throws IOException {
+        long cpf = Cpf.parse(cpfText);
+        if (cpf == Cpf.INVALID) {
+            System.err.println("Invalid CPF: " + cpfText);
+            return false;
+        }
+        MessageDigest sha = AuditChain.sha256();
+        boolean[] found = new boolean[1];
+        boolean[] valid = new boolean[1];
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            AuditChain.scan(in, (batch, previous) -> {
+                if (found[0]) return;
+                batch.readLeaves(in);
+                for (int index = 0; index < batch.size; index++) {
+                    if (batch.cpfs[index] != cpf) continue;
+                    found[0] = true;
+                    byte[][] leaves = batch.leafHashes(sha);
+                    List<byte[]> merklePath = AuditChain.merklePath(sha, leaves, index);
+
+                    System.out.println("Sequence:       " + (batch.firstSequence + index));
+                    System.out.println("Timestamp (ns): " + batch.epochNanos[index]);
+                    System.out.println("CPF:            " + Cpf.format(cpf));
+                    System.out.println("Option:         " + batch.options[index]);
+                    System.out.println("Leaf:           " + AuditChain.toHex(leaves[index]));
+                    System.out.println("Batch:          first sequence " + batch.firstSequence + ", " + batch.size
+                            + " votes, leaf index " + index);
+                    for (byte[] sibling : merklePath) {
+                        System.out.println("  sibling       " + AuditChain.toHex(sibling));
+                    }
+                    System.out.println("Root:           " + AuditChain.toHex(batch.root));
+                    System.out.println("Previous hash:  " + AuditChain.toHex(previous));
+                    System.out.println("Batch hash:     " + AuditChain.toHex(batch.hash));
+
+                    // A prova é conferida como um auditor faria, só com o que foi impresso
+                    byte[] root = AuditChain.rootFromPath(sha, leaves[index], index, batch.size, merklePath);
+                    valid[0] = root != null && MessageDigest.isEqual(root, batch.root)
+                            && MessageDigest.isEqual(batch.hash,
+                                    AuditChain.batchHash(sha, previous, batch.firstSequence, batch.size, root));
+                    return;
+                }
+            });
+        }
+        if (!found[0]) {
+            System.out.println("CPF " + Cpf.format(cpf) + " is not in the audit chain.");
+            return false;
+        }
+        System.out.println(valid[0] ? "Proof OK" : "Proof INVALID");
+        return valid[0];
+    }
+}
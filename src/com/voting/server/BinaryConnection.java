@@ -0,0 +1,102 @@
+package com.voting.server;
+
+import com.voting.common.*;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.function.Function;
+
+/**
+ * Protocolo binário com frames de tamanho prefixado (ver {@link WireProtocol}).
+ * Na versão 2, a mesma conexão atende vários votos até o terminal enviar MSG_BYE.
+ * Na versão 5, o handshake traz o id da eleição e os votos são decodificados pela cédula dela.
+ * Na versão 6, cada voto traz a chave de idempotência do terminal.
+ * Na versão 7, uma conexão persistente ociosa manda MSG_PING, entregue como {@link VoteRequest#ping()}.
+ */
+class BinaryConnection implements ClientConnection {
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Election election;
+    private final int version;
+    private boolean inSession;
+
+    BinaryConnection(Socket socket, InputStream input, Function<String, Election> elections) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(input);
+        this.version = WireProtocol.readHello(in);
+        this.election = elections.apply(WireProtocol.readElectionId(in, version));
+    }
+
+    @Override
+    public Election getElection() {
+        return election;
+    }
+
+    @Override
+    public void sendElectionData(ElectionData data) throws IOException {
+        WireProtocol.writeFrame(out, WireProtocol.MSG_ELECTION_DATA, ElectionDataCodec.encode(data));
+    }
+
+    @Override
+    public VoteRequest readVoteRequest() throws IOException {
+        WireProtocol.Frame frame;
+        try {
+            frame = WireProtocol.readFrame(in);
+        } catch (EOFException e) {
+            // Terminal de sessão que desconectou entre dois votos: fim normal
+            if (inSession) return null;
+            throw e;
+        }
+        if (frame.getType() == WireProtocol.MSG_BYE) return null;
+
+        VoteRequest request;
+        switch (frame.getType()) {
+            case WireProtocol.MSG_BATCH_VOTE:
+            case WireProtocol.MSG_FORWARD_BATCH:
+                request = BatchCodec.decode(frame, election.getData(), version);
+                break;
+            case WireProtocol.MSG_TALLY_QUERY:
+                request = TallyCodec.decodeQuery(frame);
+                break;
+            case WireProtocol.MSG_SUBSCRIBE:
+                request = VoteRequest.subscription();
+                break;
+            case WireProtocol.MSG_PING:
+                request = VoteRequest.ping();
+                break;
+            default:
+                request = VoteCodec.decode(frame, election.getData(), version);
+        }
+        // Quem manda ping é uma conexão persistente, mesmo antes do primeiro voto
+        inSession = request.isSession() || request.isPing();
+        return request;
+    }
+
+    @Override
+    public void sendResult(VoteResult result) throws IOException {
+        WireProtocol.writeFrame(out, VoteResultCodec.frameType(result), VoteResultCodec.encode(result));
+    }
+
+    /**
+     * Resposta de um lote (de um terminal ou repassado por outro nó).
+     */
+    void sendBatchResult(BatchResult result) throws IOException {
+        WireProtocol.writeFrame(out, WireProtocol.MSG_BATCH_RESULT, BatchCodec.encodeResult(result));
+    }
+
+    /**
+     * Resposta ao pedido de contagem do coordenador do cluster.
+     */
+    void sendTally(TallyResult tally) throws IOException {
+        WireProtocol.writeFrame(out, WireProtocol.MSG_TALLY, TallyCodec.encode(tally));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.voting.server;
+
+import com.voting.common.ElectionData;
+import com.voting.common.VoteRequest;
+import com.voting.common.VoteResult;
+import com.voting.common.WireProtocol;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.function.Function;
+
+/**
+ * Conexão com um terminal de votação, independente do formato usado no fio.
+ * O formato é escolhido olhando os primeiros bytes enviados pelo cliente.
+ * Uma conexão pode trazer um único voto ou uma sessão com vários votos.
+ * Lotes e mensagens do cluster só existem no protocolo binário, e as respostas
+ * deles ficam em {@link BinaryConnection}.
+ */
+interface ClientConnection extends Closeable {
+
+    /**
+     * Eleição escolhida pelo terminal no handshake, ou null se o servidor não a conhece.
+     */
+    Election getElection();
+
+    void sendElectionData(ElectionData data) throws IOException;
+
+    /**
+     * Próximo voto (ou lote) da conexão, ou null quando o terminal encerrou a sessão.
+     */
+    VoteRequest readVoteRequest() throws IOException;
+
+    void sendResult(VoteResult result) throws IOException;
+
+    /**
+     * Negocia o protocolo: clientes antigos começam com o cabeçalho da serialização Java
+     * (0xACED), os novos com {@link WireProtocol#MAGIC}. Os antigos sempre votam na eleição padrão.
+     */
+    static ClientConnection open(Socket socket, Function<String, Election> elections) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (second < 0) {
+            throw new EOFException("Client closed the connection before the handshake.");
+        }
+        if (WireProtocol.isJavaSerialization(first, second)) {
+            return new LegacyConnection(socket, in, elections.apply(WireProtocol.DEFAULT_ELECTION));
+        }
+        return new BinaryConnection(socket, in, elections);
+    }
+}
@@ -0,0 +1,226 @@
+package com.voting.server;
+
+import com.voting.common.ElectionData;
+import com.voting.common.TallyResult;
+import com.voting.common.WireProtocol;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Modo cluster: o espaço de CPFs é dividido entre vários nós.
+ *
+ * O dono de um CPF é fixo (hash do CPF módulo o número de nós), então cada CPF é
+ * deduplicado sempre no mesmo VoteLedger e nenhum lock atravessa a rede. Um nó que
+ * recebe o voto de um CPF alheio o repassa ao dono por um {@link PeerLink}.
+ *
+ * O nó 0 é o coordenador: consulta periodicamente a contagem dos outros nós e soma
+ * com a sua para exibir o resultado global.
+ *
+ * Repasses e consultas de contagem chegam pela mesma porta dos terminais, então só são
+ * aceitos de conexões vindas dos endereços da lista de nós ({@link #isPeer}).
+ *
+ * As conexões com os outros nós ficam abertas entre um repasse e outro; uma thread manda
+ * ping pelas que ficam paradas, para o idleTimeoutMillis do outro nó não derrubá-las.
+ */
+class Cluster implements Closeable {
+    private static final long TALLY_POLL_MILLIS = 500;
+    private static final long TALLY_TIMEOUT_MILLIS = 1000;
+    // Verificada a cada meio intervalo: nenhuma conexão fica mais que PING_INTERVAL_MILLIS sem escrever
+    private static final long KEEP_ALIVE_CHECK_MILLIS = WireProtocol.PING_INTERVAL_MILLIS / 2;
+
+    private final int selfIndex;
+    private final int nodeCount;
+    private final PeerLink[] peers;
+    // Endereços IP dos outros nós, resolvidos ao subir
+    private final Set<InetAddress> peerAddresses = new HashSet<>();
+
+    // Última contagem recebida de cada nó (null para o próprio nó e para quem nunca respondeu);
+    // só a thread de consulta mexe nestes arrays
+    private final long[][] remoteCounts;
+    private final boolean[] unreachable;
+
+    // Soma publicada para a thread que monta os resultados
+    private volatile long[] remoteTotals = new long[0];
+    private ScheduledExecutorService tallyPoller;
+    private final ScheduledExecutorService keepAlive;
+
+    /**
+     * @param tls contexto para falar com os outros nós quando a porta dos terminais usa TLS, ou null
+     */
+    Cluster(List<String> nodes, int selfIndex, ElectionData electionData, SSLContext tls) {
+        if (selfIndex < 0 || selfIndex >= nodes.size()) {
+            throw new IllegalArgumentException("Node index " + selfIndex + " outside the cluster of " + nodes.size() + " nodes.");
+        }
+        this.selfIndex = selfIndex;
+        this.nodeCount = nodes.size();
+        this.peers = new PeerLink[nodeCount];
+        this.remoteCounts = new long[nodeCount][];
+        this.unreachable = new boolean[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            if (i == selfIndex) continue;
+            InetSocketAddress address = parseAddress(nodes.get(i));
+            peers[i] = new PeerLink(i, address, electionData, tls);
+            if (address.isUnresolved()) {
+                System.err.println("Cluster node " + i + " (" + nodes.get(i) + ") did not resolve; its forwards will be refused.");
+            } else {
+                peerAddresses.add(address.getAddress());
+            }
+        }
+
+        keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_CHECK_MILLIS);
+        keepAlive.scheduleWithFixedDelay(() -> {
+            for (PeerLink peer : peers) {
+                if (peer != null) peer.pingIfIdle(idleNanos);
+            }
+        }, KEEP_ALIVE_CHECK_MILLIS, KEEP_ALIVE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Endereço "host:porta" de um nó da lista.
+     */
+    static InetSocketAddress parseAddress(String node) {
+        int separator = node.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Cluster node must be host:port, got \"" + node + "\".");
+        }
+        return new InetSocketAddress(node.substring(0, separator).trim(),
+                Integer.parseInt(node.substring(separator + 1).trim()));
+    }
+
+    int getSelfIndex() {
+        return selfIndex;
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    boolean isCoordinator() {
+        return selfIndex == 0;
+    }
+
+    /**
+     * Nó dono do CPF. CPFs inválidos (-1) ficam no nó que os recebeu, que os rejeita.
+     */
+    int ownerOf(long cpf) {
+        if (cpf < 0) return selfIndex;
+        return (int) Long.remainderUnsigned(CpfVoteIndex.mix(cpf), nodeCount);
+    }
+
+    boolean isLocal(long cpf) {
+        return ownerOf(cpf) == selfIndex;
+    }
+
+    /**
+     * True se a conexão vem de um dos outros nós. Com vários nós na mesma máquina,
+     * qualquer processo local passa; a lista de nós deve usar os IPs pelos quais eles se conectam.
+     */
+    boolean isPeer(InetAddress address) {
+        return peerAddresses.contains(address);
+    }
+
+    PeerLink peer(int node) {
+        return peers[node];
+    }
+
+    /**
+     * Passa a consultar a contagem dos outros nós; {@code onChange} é chamado quando alguma muda.
+     */
+    void startTallyPolling(Runnable onChange) {
+        tallyPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-tally");
+            t.setDaemon(true);
+            return t;
+        });
+        tallyPoller.scheduleWithFixedDelay(() -> pollTallies(onChange), 0, TALLY_POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void pollTallies(Runnable onChange) {
+        // Todos os pedidos saem antes de esperar qualquer resposta
+        List<PeerLink> queried = new ArrayList<>();
+        List<CompletableFuture<TallyResult>> replies = new ArrayList<>();
+        for (PeerLink peer : peers) {
+            if (peer == null) continue;
+            queried.add(peer);
+            replies.add(peer.queryTally());
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < queried.size(); i++) {
+            int node = queried.get(i).getNodeIndex();
+            try {
+                TallyResult tally = replies.get(i).get(TALLY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                long[] counts = new long[tally.optionCount()];
+                for (int option = 0; option < counts.length; option++) counts[option] = tally.getCount(option);
+                if (!Arrays.equals(counts, remoteCounts[node])) {
+                    remoteCounts[node] = counts;
+                    changed = true;
+                }
+                if (unreachable[node]) {
+                    unreachable[node] = false;
+                    System.out.println("Cluster node " + node + " is reachable again.");
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                // A última contagem conhecida continua valendo; o aviso sai uma vez por queda
+                if (!unreachable[node]) {
+                    unreachable[node] = true;
+                    String cause = e instanceof ExecutionException ? e.getCause().getMessage() : "timed out";
+                    System.err.println("Cluster node " + node + " tally unavailable: " + cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (changed) {
+            remoteTotals = sumRemoteCounts();
+            onChange.run();
+        }
+    }
+
+    private long[] sumRemoteCounts() {
+        long[] total = new long[0];
+        for (long[] counts : remoteCounts) {
+            if (counts == null) continue;
+            if (counts.length > total.length) total = Arrays.copyOf(total, counts.length);
+            for (int option = 0; option < counts.length; option++) total[option] += counts[option];
+        }
+        return total;
+    }
+
+    /**
+     * Soma das últimas contagens conhecidas dos outros nós, por opção da cédula.
+     */
+    long remoteCount(int option) {
+        long[] totals = remoteTotals;
+        return option < totals.length ? totals[option] : 0;
+    }
+
+    @Override
+    public void close() {
+        if (tallyPoller != null) tallyPoller.shutdownNow();
+        keepAlive.shutdownNow();
+        for (PeerLink peer : peers) {
+            if (peer != null) peer.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.voting.server;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket por IP de origem, consultado na thread do accept antes de a conexão
+ * ocupar um handler: cada IP ganha {@code perSecond} fichas por segundo, acumula até
+ * {@code burst} e gasta uma por conexão nova. Sem ficha, a conexão é fechada na hora.
+ *
+ * Só a thread do accept usa esta classe, então não há lock nem atomics. IPs que ficaram
+ * quietos o bastante para encher o balde são esquecidos de tempos em tempos, para o
+ * mapa não crescer com cada IP que já se conectou.
+ */
+class ConnectionRateLimiter {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final double tokensPerNano;
+    private final double burst;
+    // Tempo para um balde vazio encher de novo; depois disso o IP não precisa mais ser lembrado
+    private final long refillNanos;
+    private final Map<InetAddress, Bucket> buckets = new HashMap<>();
+    private long lastSweep = System.nanoTime();
+
+    ConnectionRateLimiter(int perSecond, int burst) {
+        if (perSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive.");
+        }
+        this.tokensPerNano = perSecond / 1e9;
+        this.burst = burst;
+        this.refillNanos = (long) (burst / tokensPerNano);
+    }
+
+    /**
+     * Gasta uma ficha do IP; false se ele excedeu a taxa.
+     */
+    boolean tryAcquire(InetAddress address) {
+        long now = System.nanoTime();
+        if (now - lastSweep >= SWEEP_INTERVAL_NANOS) sweep(now);
+
+        Bucket bucket = buckets.get(address);
+        if (bucket == null) {
+            bucket = new Bucket(burst, now);
+            buckets.put(address, bucket);
+        } else {
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedNanos) * tokensPerNano);
+            bucket.updatedNanos = now;
+        }
+        if (bucket.tokens < 1) return false;
+        bucket.tokens -= 1;
+        return true;
+    }
+
+    private void sweep(long now) {
+        lastSweep = now;
+        for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().updatedNanos >= refillNanos) it.remove();
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+
+        Bucket(double tokens, long updatedNanos) {
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+    }
+}
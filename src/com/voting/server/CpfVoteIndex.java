@@ -0,0 +1,210 @@
+package com.voting.server;
+
+/**
+ * Índice concorrente CPF -> voto usando apenas arrays de long (sem objeto por eleitor).
+ *
+ * Endereçamento aberto com sondagem linear, dividido em segmentos com lock próprio:
+ * threads em segmentos diferentes não disputam o mesmo lock. Cada eleitor ocupa
+ * 16 bytes por posição da tabela; com ocupação entre 37% e 75% isso dá entre
+ * ~21 e ~43 bytes por eleitor, contra mais de 100 bytes de um
+ * {@code ConcurrentHashMap<String, ...>} (nó, String, array de bytes e valor).
+ *
+ * A chave guardada é {@code cpf + 1}, porque 0 marca posição vazia.
+ */
+final class CpfVoteIndex {
+    private static final int SEGMENT_COUNT = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+
+    // Valor devolvido por get() quando o CPF não votou
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    /**
+     * Recebe cada CPF e seu valor na iteração.
+     */
+    interface EntryConsumer {
+        void accept(long cpf, long value);
+    }
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    CpfVoteIndex() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    /**
+     * Grava o valor se o CPF ainda não existe. Devolve true se gravou.
+     */
+    boolean putIfAbsent(long cpf, long value) {
+        long key = cpf + 1;
+        long hash = mix(key);
+        return segmentFor(hash).putIfAbsent(key, hash, value);
+    }
+
+    long get(long cpf) {
+        long key = cpf + 1;
+        long hash = mix(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Troca o valor do CPF somente se ele ainda é {@code expected}. Devolve true se trocou.
+     */
+    boolean replace(long cpf, long expected, long value) {
+        long key = cpf + 1;
+        long hash = mix(key);
+        return segmentFor(hash).replace(key, hash, expected, value);
+    }
+
+    /**
+     * Remove o CPF somente se ele ainda tem exatamente este valor.
+     */
+    boolean remove(long cpf, long value) {
+        long key = cpf + 1;
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash, value);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) size += segment.size;
+        return size;
+    }
+
+    /**
+     * Percorre um segmento por vez. O lock do segmento só é mantido enquanto as tabelas dele
+     * são copiadas; o consumidor (que pode gravar em disco) roda sobre a cópia, então os
+     * votos continuam sendo aceitos em todos os segmentos.
+     */
+    void forEach(EntryConsumer consumer) {
+        for (Segment segment : segments) segment.forEach(consumer);
+    }
+
+    /**
+     * Memória ocupada pelas tabelas, em bytes.
+     */
+    long memoryBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) bytes += segment.memoryBytes();
+        return bytes;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 58)];
+    }
+
+    /**
+     * Finalizador do MurmurHash3: CPFs próximos caem em posições espalhadas.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+        private long[] keys;
+        private long[] values;
+        private volatile int size;
+
+        Segment(int capacity) {
+            keys = new long[capacity];
+            values = new long[capacity];
+        }
+
+        synchronized boolean putIfAbsent(long key, long hash, long value) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) return false;
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            if (size > keys.length - (keys.length >>> 2)) resize();
+            return true;
+        }
+
+        synchronized long get(long key, long hash) {
+            int slot = find(key, hash);
+            return slot < 0 ? NO_VALUE : values[slot];
+        }
+
+        synchronized boolean replace(long key, long hash, long expected, long value) {
+            int slot = find(key, hash);
+            if (slot < 0 || values[slot] != expected) return false;
+            values[slot] = value;
+            return true;
+        }
+
+        synchronized boolean remove(long key, long hash, long value) {
+            int slot = find(key, hash);
+            if (slot < 0 || values[slot] != value) return false;
+
+            // Remoção com deslocamento para trás: mantém as sequências de sondagem sem "lápides"
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int ideal = (int) mix(keys[next]) & mask;
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            values[hole] = 0;
+            size--;
+            return true;
+        }
+
+        void forEach(EntryConsumer consumer) {
+            long[] keysCopy;
+            long[] valuesCopy;
+            synchronized (this) {
+                keysCopy = keys.clone();
+                valuesCopy = values.clone();
+            }
+            for (int i = 0; i < keysCopy.length; i++) {
+                if (keysCopy[i] != EMPTY) consumer.accept(keysCopy[i] - 1, valuesCopy[i]);
+            }
+        }
+
+        synchronized long memoryBytes() {
+            return (long) keys.length * 2 * Long.BYTES;
+        }
+
+        private int find(long key, long hash) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == EMPTY) continue;
+                int slot = (int) mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.voting.server;
+
+import com.voting.common.ElectionData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Uma eleição hospedada pelo servidor: cédula, CPFs que já votaram, contagem,
+ * journal, snapshots e observadores próprios. Nada disso é dividido com outras
+ * eleições, então votos em eleições diferentes não disputam nenhum lock.
+ *
+ * A cédula de uma eleição criada em tempo de execução é gravada ao lado do journal
+ * ({@code votes-<id>.ballot}), para a eleição ser recriada antes do replay ao reiniciar.
+ */
+final class Election implements Closeable {
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    // O ordinal vai num short no protocolo e a opção ocupa 16 bits no índice de CPFs
+    static final int MAX_OPTIONS = 1024;
+
+    private static final String BALLOT_SUFFIX = ".ballot";
+
+    private final String id;
+    private final ElectionData data;
+    private final VoteLedger ledger;
+    private final ObserverHub observers;
+    private VoteJournal journal;
+    private SnapshotManager snapshots;
+    private AuditChain auditChain;
+    private ResultsPublisher publisher;
+
+    Election(String id, ElectionData data, ObserverHub observers) {
+        this.id = id;
+        this.data = data;
+        this.ledger = new VoteLedger(data.getOptions());
+        this.observers = observers;
+    }
+
+    /**
+     * Confere o id e a cédula antes de criar a eleição.
+     *
+     * @throws IllegalArgumentException com o motivo, para ser mostrado a quem definiu a cédula
+     */
+    static void validate(String id, ElectionData data) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Election id must have 1 to 32 letters, digits, '_' or '-'.");
+        }
+        if (data.getQuestion() == null || data.getQuestion().isBlank()) {
+            throw new IllegalArgumentException("The ballot needs a question.");
+        }
+        List<String> options = data.getOptions();
+        if (options.isEmpty() || options.size() > MAX_OPTIONS) {
+            throw new IllegalArgumentException("A ballot has 1 to " + MAX_OPTIONS + " options.");
+        }
+        if (new HashSet<>(options).size() != options.size() || options.stream().anyMatch(String::isBlank)) {
+            throw new IllegalArgumentException("Ballot options must be unique and not blank.");
+        }
+    }
+
+    /**
+     * Reconstrói contagem e CPFs: carrega o último snapshot e reaplica só o final do journal.
+     */
+    void recover(Path journalPath, ServerConfig config) throws IOException {
+        long start = System.nanoTime();
+        String name = journalPath.getFileName().toString();
+        Path snapshotPath = journalPath.resolveSibling(name.replaceFirst("\\.journal$", "") + ".snapshot");
+        snapshots = new SnapshotManager(snapshotPath, ledger);
+        long fromSegment = snapshots.loadLatest();
+        int snapshotVotes = ledger.totalVotes();
+        long snapshotMillis = (System.nanoTime() - start) / 1_000_000;
+
+        journal = VoteJournal.open(journalPath, fromSegment, ledger::restore, config.getJournalCommitLatencyMillis());
+        journal.setDurableListener(ledger::markDurable);
+        ledger.trackDurability();
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+        if (ledger.totalVotes() > 0) {
+            System.out.println("Election " + id + ": recovered " + ledger.totalVotes() + " votes in " + totalMillis + " ms ("
+                    + snapshotVotes + " from snapshot in " + snapshotMillis + " ms, "
+                    + (ledger.totalVotes() - snapshotVotes) + " from journal segment " + fromSegment + " onward); CPF index uses "
+                    + ledger.indexMemoryBytes() / ledger.totalVotes() + " bytes per voter");
+        }
+        if (config.getSnapshotIntervalSeconds() > 0) {
+            snapshots.start(journal, config.getSnapshotIntervalSeconds());
+        }
+
+        // A trilha de auditoria vem do journal: o que faltar nela é encadeado antes de a eleição abrir
+        auditChain = AuditChain.open(journalPath.resolveSibling(baseName(journalPath) + ".audit"), id);
+        auditChain.appendMissing(ledger);
+    }
+
+    void startPublishing(ResultsPublisher publisher) {
+        this.publisher = publisher;
+        publisher.start();
+    }
+
+    /**
+     * Journal de uma eleição: a padrão usa o arquivo configurado; as outras,
+     * {@code votes-<id>.journal} ao lado dele.
+     */
+    static Path journalPath(Path defaultJournal, String id, boolean isDefault) {
+        if (isDefault) return defaultJournal;
+        return defaultJournal.resolveSibling(baseName(defaultJournal) + "-" + id + ".journal");
+    }
+
+    static void writeBallot(Path defaultJournal, String id, ElectionData data) throws IOException {
+        Properties ballot = new Properties();
+        ballot.setProperty("id", id);
+        ballot.setProperty("question", data.getQuestion());
+        for (int i = 0; i < data.getOptions().size(); i++) {
+            ballot.setProperty("option." + i, data.getOptions().get(i));
+        }
+        Path target = ballotPath(defaultJournal, id);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            ballot.store(out, "Election ballot");
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Ids das eleições com cédula gravada ao lado do journal padrão.
+     */
+    static List<String> listBallots(Path defaultJournal) throws IOException {
+        Path dir = defaultJournal.toAbsolutePath().getParent();
+        String prefix = baseName(defaultJournal) + "-";
+        List<String> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + BALLOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(name.substring(prefix.length(), name.length() - BALLOT_SUFFIX.length()));
+            }
+        }
+        return ids;
+    }
+
+    static ElectionData readBallot(Path defaultJournal, String id) throws IOException {
+        Properties ballot = new Properties();
+        try (Reader in = Files.newBufferedReader(ballotPath(defaultJournal, id), StandardCharsets.UTF_8)) {
+            ballot.load(in);
+        }
+        List<String> options = new ArrayList<>();
+        String option;
+        while ((option = ballot.getProperty("option." + options.size())) != null) {
+            options.add(option);
+        }
+        return new ElectionData(ballot.getProperty("question"), options);
+    }
+
+    private static Path ballotPath(Path defaultJournal, String id) {
+        return defaultJournal.resolveSibling(baseName(defaultJournal) + "-" + id + BALLOT_SUFFIX);
+    }
+
+    private static String baseName(Path journal) {
+        return journal.getFileName().toString().replaceFirst("\\.journal$", "");
+    }
+
+    String getId() {
+        return id;
+    }
+
+    ElectionData getData() {
+        return data;
+    }
+
+    VoteLedger getLedger() {
+        return ledger;
+    }
+
+    ObserverHub getObservers() {
+        return observers;
+    }
+
+    /**
+     * Null quando a persistência está desligada.
+     */
+    VoteJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Null quando a persistência está desligada.
+     */
+    AuditChain getAuditChain() {
+        return auditChain;
+    }
+
+    void markDirty() {
+        if (publisher != null) publisher.markDirty();
+    }
+
+    @Override
+    public void close() {
+        if (publisher != null) publisher.stop();
+        observers.close();
+        if (snapshots != null) snapshots.close();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+        if (auditChain != null) {
+            try {
+                auditChain.close();
+            } catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.voting.server;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Servidor sem interface gráfica, para rodar como serviço. A configuração vem de um
+ * arquivo .properties ({@link ServerConfig#load}); sem arquivo, valem os padrões.
+ *
+ * Ninguém acompanha a apuração até uma GUI se conectar: com {@code monitorPort}
+ * configurado, {@code ServerGUI --attach porta} abre a tela na mesma máquina e pode
+ * ser fechada sem afetar a votação. Ctrl+C (ou SIGTERM) fecha o servidor, o journal e os snapshots.
+ */
+public class HeadlessServer {
+
+    public static void main(String[] args) throws IOException {
+        ServerConfig config = args.length > 0 ? ServerConfig.load(Paths.get(args[0])) : new ServerConfig();
+        Server server = new Server(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stopServer, "server-shutdown"));
+        server.run();
+    }
+}
@@ -0,0 +1,65 @@
+package com.voting.server;
+
+import com.voting.common.ElectionData;
+import com.voting.common.Vote;
+import com.voting.common.VoteRequest;
+import com.voting.common.VoteResult;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Protocolo original via ObjectStream, mantido para os terminais antigos (um voto por conexão).
+ * O filtro de desserialização só aceita Vote e String, bloqueando gadgets arbitrários.
+ */
+class LegacyConnection implements ClientConnection {
+    private static final ObjectInputFilter VOTE_ONLY_FILTER = ObjectInputFilter.Config.createFilter(
+            "com.voting.common.Vote;java.lang.String;maxdepth=2;maxrefs=16;maxbytes=4096;!*");
+
+    private final ObjectOutputStream out;
+    private final ObjectInputStream in;
+    private final Election election;
+
+    LegacyConnection(Socket socket, InputStream input, Election election) throws IOException {
+        this.election = election;
+        this.out = new ObjectOutputStream(socket.getOutputStream());
+        this.in = new ObjectInputStream(input);
+        in.setObjectInputFilter(VOTE_ONLY_FILTER);
+    }
+
+    @Override
+    public Election getElection() {
+        return election;
+    }
+
+    @Override
+    public void sendElectionData(ElectionData data) throws IOException {
+        out.writeObject(data);
+        out.flush();
+    }
+
+    @Override
+    public VoteRequest readVoteRequest() throws IOException {
+        try {
+            return new VoteRequest(VoteRequest.NO_REQUEST_ID, (Vote) in.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new InvalidObjectException("Expected a Vote: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void sendResult(VoteResult result) throws IOException {
+        // Clientes antigos esperam apenas a String da mensagem
+        out.writeObject(result.getMessage());
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.voting.server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Lado da GUI do {@link MonitorEndpoint}: lê as publicações de um servidor headless
+ * na mesma máquina e entrega cada uma ao ouvinte, numa thread própria.
+ */
+class MonitorClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final Thread reader;
+
+    /**
+     * @param onClosed avisado (na thread de leitura) quando o servidor fecha a conexão
+     */
+    MonitorClient(int port, ResultsListener listener, Runnable onClosed) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != MonitorEndpoint.MAGIC) {
+                throw new StreamCorruptedException("Not a voting server monitor.");
+            }
+            int version = in.readUnsignedByte();
+            if (version != MonitorEndpoint.VERSION) {
+                throw new StreamCorruptedException("Unsupported monitor version " + version + ".");
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        reader = new Thread(() -> {
+            try {
+                while (true) {
+                    in.readInt(); // tamanho do frame; o conteúdo é lido campo a campo
+                    listener.resultsPublished(MonitorEndpoint.decode(in));
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) onClosed.run();
+            }
+        }, "monitor-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
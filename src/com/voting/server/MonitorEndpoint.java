@@ -0,0 +1,190 @@
+package com.voting.server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repassa a apuração publicada a GUIs rodando em outro processo na mesma máquina
+ * ({@code ServerGUI --attach porta}), para o servidor rodar sem Swing e a tela ser
+ * aberta, fechada ou reaberta sem afetar a votação. Aberto só no loopback.
+ *
+ * Cada publicação é codificada uma vez e entregue à fila de cada GUI; uma thread por GUI
+ * escreve no socket. Uma GUI que não acompanha o ritmo é desconectada, nunca espera-se por ela.
+ *
+ * Formato: o servidor envia {@link #MAGIC} e {@link #VERSION}; depois, cada publicação é
+ * um frame (int tamanho, conteúdo) com eleição, pergunta, opções e votos, total e as
+ * entradas novas de auditoria (CPF, opção, instante).
+ */
+class MonitorEndpoint implements ResultsListener, Closeable {
+    static final int MAGIC = 0x564F4D4E; // "VOMN"
+    static final int VERSION = 1;
+
+    // Publicações pendentes por GUI; com 10 publicações por segundo, ~6 s de atraso
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final Server server;
+    private final ServerSocket serverSocket;
+    private final Set<Monitor> monitors = ConcurrentHashMap.newKeySet();
+
+    MonitorEndpoint(int port, Server server) throws IOException {
+        this.server = server;
+        this.serverSocket = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "monitor-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Monitor available on localhost:" + port);
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Monitor monitor = new Monitor(serverSocket.accept());
+                synchronized (this) {
+                    // Só com uma GUI conectada o servidor enfileira a auditoria
+                    if (monitors.isEmpty()) server.addResultsListener(this);
+                    monitors.add(monitor);
+                }
+                // A GUI nova recebe a contagem atual de todas as eleições no próximo tick
+                server.republishResults();
+                monitor.start();
+            } catch (SocketException e) {
+                // Endpoint fechado
+            } catch (IOException e) {
+                System.err.println("Monitor connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void resultsPublished(ResultsSnapshot snapshot) {
+        if (monitors.isEmpty()) return;
+        byte[] frame;
+        try {
+            frame = encode(snapshot);
+        } catch (IOException e) {
+            // Escrita em memória: não acontece
+            throw new UncheckedIOException(e);
+        }
+        for (Monitor monitor : monitors) {
+            if (!monitor.queue.offer(frame)) {
+                System.err.println("Monitor " + monitor.name + " is not keeping up; disconnecting");
+                monitor.close();
+            }
+        }
+    }
+
+    static byte[] encode(ResultsSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + snapshot.getNewAuditEntries().size() * 18);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(snapshot.getElectionId());
+        out.writeUTF(snapshot.getQuestion());
+        out.writeShort(snapshot.getVoteCounts().size());
+        for (Map.Entry<String, Long> count : snapshot.getVoteCounts().entrySet()) {
+            out.writeUTF(count.getKey());
+            out.writeLong(count.getValue());
+        }
+        out.writeLong(snapshot.getTotalVotes());
+        out.writeInt(snapshot.getNewAuditEntries().size());
+        for (AuditEntry entry : snapshot.getNewAuditEntries()) {
+            out.writeLong(entry.getCpfNumber());
+            out.writeShort(entry.getOption());
+            out.writeLong(entry.getEpochMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    static ResultsSnapshot decode(DataInputStream in) throws IOException {
+        String electionId = in.readUTF();
+        String question = in.readUTF();
+        int options = in.readUnsignedShort();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < options; i++) {
+            counts.put(in.readUTF(), in.readLong());
+        }
+        long total = in.readLong();
+        int entries = in.readInt();
+        if (entries < 0) throw new StreamCorruptedException("Negative audit entry count.");
+        List<AuditEntry> audit = new ArrayList<>(Math.min(entries, 1 << 16));
+        for (int i = 0; i < entries; i++) {
+            long cpf = in.readLong();
+            int option = in.readShort();
+            audit.add(new AuditEntry(cpf, option, in.readLong()));
+        }
+        return new ResultsSnapshot(electionId, question, counts, total, audit);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) { /* Ignore */ }
+        for (Monitor monitor : monitors) monitor.close();
+    }
+
+    private final class Monitor implements Runnable {
+        private final Socket socket;
+        private final String name;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread writer;
+
+        Monitor(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+            this.writer = new Thread(this, "monitor-writer-" + socket.getPort());
+            writer.setDaemon(true);
+        }
+
+        void start() {
+            writer.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.flush();
+                while (!socket.isClosed()) {
+                    byte[] frame = queue.take();
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    // Junta o que chegou enquanto escrevia num único flush
+                    while ((frame = queue.poll()) != null) {
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // GUI fechada
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            synchronized (MonitorEndpoint.this) {
+                if (!monitors.remove(this)) return;
+                if (monitors.isEmpty()) server.removeResultsListener(MonitorEndpoint.this);
+            }
+            writer.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) { /* Ignore */ }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.voting.server;
+
+import com.voting.common.TallyUpdate;
+import com.voting.common.TallyUpdateCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envia a apuração em tempo real aos observadores inscritos (painéis, terminais de imprensa).
+ *
+ * A cada publicação do {@link ResultsPublisher} a diferença desde a anterior vira um único
+ * frame, codificado uma vez e compartilhado por todos os observadores. Cada observador tem
+ * uma fila curta e é escrito por um pool de threads, nunca pela thread que publica:
+ * um observador lento não atrasa os outros nem a entrada de votos.
+ *
+ * Se a fila de um observador enche, os deltas pendentes são trocados por uma contagem
+ * completa (resync). Se uma escrita fica parada por mais de {@link #STALLED_WRITE_NANOS},
+ * o observador é desconectado por uma varredura com timer próprio, que roda mesmo sem
+ * votos novos. Até lá, a escrita parada prende uma só thread do pool; as outras seguem
+ * atendendo os demais observadores.
+ */
+class ObserverHub implements Closeable {
+    // Threads criadas sob demanda e encerradas quando ociosas; várias escritas paradas ao mesmo
+    // tempo ainda deixam threads livres para os outros observadores
+    private static final int WRITER_THREADS = 64;
+    private static final long WRITER_IDLE_SECONDS = 30;
+
+    // Publicações pendentes por observador; com 10 publicações por segundo, ~3 s de atraso
+    private static final int QUEUE_CAPACITY = 32;
+
+    private static final long STALLED_WRITE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long SWEEP_INTERVAL_MILLIS = 500;
+
+    private final int maxObservers;
+    private final Set<Observer> observers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writers;
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final ScheduledFuture<?> sweep;
+
+    // Última contagem publicada e sua versão; protegidas por this
+    private long version;
+    private long[] counts;
+    private byte[] fullFrame;
+
+    /**
+     * @param writers pool de escrita, dividido entre os hubs de todas as eleições e encerrado por quem o criou
+     * @param sweeper timer da varredura de escritas paradas, também dividido e encerrado por quem o criou
+     */
+    ObserverHub(int optionCount, int maxObservers, ExecutorService writers, ScheduledExecutorService sweeper) {
+        this.maxObservers = maxObservers;
+        this.counts = new long[optionCount];
+        this.writers = writers;
+        this.sweep = sweeper.scheduleWithFixedDelay(this::dropStalled, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    static ExecutorService newWriterPool() {
+        AtomicInteger threadIds = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS,
+                WRITER_IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "observer-writer-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Fora do publicador: fechar o socket de uma escrita parada não pode atrasar as publicações.
+     */
+    static ScheduledExecutorService newSweeper() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "observer-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Assume a conexão do observador e envia a contagem completa atual.
+     * Devolve false se o limite de observadores foi atingido.
+     */
+    synchronized boolean subscribe(Socket socket) throws IOException {
+        if (observers.size() >= maxObservers) return false;
+        Observer observer = new Observer(socket);
+        observer.offer(fullFrame());
+        observers.add(observer);
+        return true;
+    }
+
+    /**
+     * Chamado pelo ResultsPublisher a cada tick com mudanças. Não bloqueia em nenhum observador.
+     */
+    synchronized void publish(long[] newCounts) {
+        long[] delta = new long[counts.length];
+        boolean changed = false;
+        for (int i = 0; i < delta.length && i < newCounts.length; i++) {
+            delta[i] = newCounts[i] - counts[i];
+            if (delta[i] != 0) changed = true;
+        }
+        if (changed) {
+            version++;
+            counts = newCounts.clone();
+            fullFrame = null;
+            byte[] deltaFrame = encode(new TallyUpdate(version, false, delta));
+            for (Observer observer : observers) {
+                if (!observer.offer(deltaFrame)) {
+                    resyncs.increment();
+                    observer.resync(fullFrame());
+                }
+            }
+        }
+    }
+
+    private byte[] fullFrame() {
+        if (fullFrame == null) fullFrame = encode(new TallyUpdate(version, true, counts.clone()));
+        return fullFrame;
+    }
+
+    private static byte[] encode(TallyUpdate update) {
+        try {
+            return TallyUpdateCodec.encodeFrame(update);
+        } catch (IOException e) {
+            // Escrita em memória: não acontece
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fecha o socket de quem está há tempo demais numa escrita; a thread presa recebe
+     * uma exceção e fica livre para os outros observadores.
+     */
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Observer observer : observers) {
+            long started = observer.writeStartedNanos;
+            if (started != 0 && now - started > STALLED_WRITE_NANOS && observer.close()) drops.increment();
+        }
+    }
+
+    int getObserverCount() {
+        return observers.size();
+    }
+
+    long getResyncs() {
+        return resyncs.sum();
+    }
+
+    long getDrops() {
+        return drops.sum();
+    }
+
+    @Override
+    public void close() {
+        sweep.cancel(false);
+        for (Observer observer : observers) observer.close();
+    }
+
+    private final class Observer implements Runnable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        // Início da escrita em andamento (0 = nenhuma), vigiado por dropStalled
+        private volatile long writeStartedNanos;
+
+        Observer(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        boolean offer(byte[] frame) {
+            if (!queue.offer(frame)) return false;
+            schedule();
+            return true;
+        }
+
+        /**
+         * Descarta os deltas que o observador não conseguiu receber; a contagem completa os substitui.
+         */
+        void resync(byte[] full) {
+            queue.clear();
+            queue.offer(full);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                writers.execute(this);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                writeStartedNanos = System.nanoTime();
+                byte[] frame;
+                while ((frame = queue.poll()) != null) {
+                    out.write(frame);
+                }
+                out.flush();
+            } catch (IOException e) {
+                // Observador desconectou (ou foi derrubado por dropStalled)
+                close();
+                return;
+            } finally {
+                writeStartedNanos = 0;
+            }
+            scheduled.set(false);
+            // Um frame que chegou entre o último poll e a linha acima ainda precisa sair
+            if (!queue.isEmpty()) schedule();
+        }
+
+        /**
+         * Devolve true só na primeira chamada.
+         */
+        boolean close() {
+            if (!closed.compareAndSet(false, true)) return false;
+            observers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) { /* Ignore */ }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.voting.server;
+
+import com.voting.common.*;
+
+import javax.net.ssl.SSLContext;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Conexão persistente com outro nó do cluster, com pipeline: vários pedidos podem
+ * aguardar resposta ao mesmo tempo e as respostas chegam na ordem de envio.
+ * A conexão é aberta no primeiro uso e reaberta no pedido seguinte a uma queda, fora do
+ * lock de escrita e com prazo para o handshake: um nó que aceita a conexão e não responde
+ * atrasa só quem precisa dele, e no máximo {@code CONNECT_TIMEOUT_MS} por tentativa.
+ * Se a porta dos terminais usa TLS, o repasse também usa, e a reconexão retoma a sessão.
+ * Parada, a conexão recebe pings do {@link Cluster} ({@link #pingIfIdle}) para o outro nó
+ * não a encerrar como ociosa entre dois repasses.
+ */
+class PeerLink implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final int nodeIndex;
+    private final InetSocketAddress address;
+    private final ElectionData electionData;
+    private final SSLContext tls;
+    private final Object writeLock = new Object();
+    // Uma conexão nova por vez; quem chega durante o handshake espera por ela
+    private final Object connectLock = new Object();
+    private Connection connection;
+    private int nextRequestId;
+    private boolean closed;
+    private long lastWriteNanos;
+
+    PeerLink(int nodeIndex, InetSocketAddress address, ElectionData electionData, SSLContext tls) {
+        this.nodeIndex = nodeIndex;
+        this.address = address;
+        this.electionData = electionData;
+        this.tls = tls;
+    }
+
+    int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    /**
+     * Repassa votos ao nó dono dos CPFs; o futuro traz um status por voto.
+     */
+    CompletableFuture<BatchResult> forward(List<Vote> votes) {
+        return request(WireProtocol.MSG_FORWARD_BATCH,
+                id -> BatchCodec.encode(VoteRequest.forwardedBatch(id, votes), electionData),
+                BatchCodec::decodeResult, BatchResult::getRequestId);
+    }
+
+    /**
+     * Pede a contagem local do nó.
+     */
+    CompletableFuture<TallyResult> queryTally() {
+        return request(WireProtocol.MSG_TALLY_QUERY, TallyCodec::encodeQuery,
+                TallyCodec::decode, TallyResult::getRequestId);
+    }
+
+    private <T> CompletableFuture<T> request(byte type, RequestEncoder encoder,
+                                             ReplyDecoder<T> decoder, RequestIdOf<T> requestIdOf) {
+        Connection current;
+        try {
+            current = connected();
+        } catch (IOException e) {
+            return failed(e);
+        }
+        synchronized (writeLock) {
+            try {
+                if (closed) throw new IOException("Link to node " + nodeIndex + " is closed.");
+                if (current.broken) throw new IOException("Connection to node " + nodeIndex + " was lost.");
+                int requestId = nextRequestId++;
+                PendingReply<T> reply = new PendingReply<>(requestId, decoder, requestIdOf);
+                // Registrado antes do envio: a resposta pode chegar antes de writeFrame voltar
+                current.pending.add(reply);
+                WireProtocol.writeFrame(current.out, type, encoder.encode(requestId));
+                lastWriteNanos = System.nanoTime();
+                return reply.future;
+            } catch (IOException e) {
+                current.close();
+                return failed(e);
+            }
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(IOException cause) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(cause);
+        return failed;
+    }
+
+    /**
+     * Manda um ping se a conexão está aberta e nada foi escrito nela há {@code idleNanos}.
+     * Sem conexão não faz nada: o próximo pedido abre uma.
+     */
+    void pingIfIdle(long idleNanos) {
+        synchronized (writeLock) {
+            if (closed || connection == null || connection.broken) return;
+            long now = System.nanoTime();
+            if (now - lastWriteNanos < idleNanos) return;
+            try {
+                WireProtocol.writePing(connection.out);
+                lastWriteNanos = now;
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Conexão aberta com o nó, abrindo uma nova se preciso. O connect e o handshake
+     * acontecem fora do {@code writeLock}: os pings e o fechamento do link não esperam por eles.
+     */
+    private Connection connected() throws IOException {
+        Connection current = usableConnection();
+        if (current != null) return current;
+        synchronized (connectLock) {
+            current = usableConnection();
+            if (current != null) return current;
+            Connection fresh = new Connection(open());
+            synchronized (writeLock) {
+                if (closed) {
+                    fresh.close();
+                    throw new IOException("Link to node " + nodeIndex + " is closed.");
+                }
+                connection = fresh;
+            }
+            Thread reader = new Thread(fresh::readReplies, "peer-reader-" + nodeIndex);
+            reader.setDaemon(true);
+            reader.start();
+            return fresh;
+        }
+    }
+
+    private Connection usableConnection() throws IOException {
+        synchronized (writeLock) {
+            if (closed) throw new IOException("Link to node " + nodeIndex + " is closed.");
+            return connection != null && !connection.broken ? connection : null;
+        }
+    }
+
+    private Socket open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            return tls == null ? socket : Tls.wrap(tls, socket, address.getHostString(), address.getPort());
+        } catch (IOException e) {
+            socket.close();
+            throw new IOException("Node " + nodeIndex + " (" + address + ") unreachable: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            closed = true;
+            if (connection != null) connection.close();
+        }
+    }
+
+    private interface RequestEncoder {
+        byte[] encode(int requestId) throws IOException;
+    }
+
+    private interface ReplyDecoder<T> {
+        T decode(WireProtocol.Frame frame) throws IOException;
+    }
+
+    private interface RequestIdOf<T> {
+        int requestId(T reply);
+    }
+
+    /**
+     * Um socket aberto com o nó e os pedidos enviados por ele ainda sem resposta.
+     */
+    private final class Connection {
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final Queue<PendingReply<?>> pending = new ConcurrentLinkedQueue<>();
+        volatile boolean broken;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                // O handshake TLS e a resposta ao hello têm prazo; depois as respostas podem demorar
+                socket.setSoTimeout(CONNECT_TIMEOUT_MS);
+                WireProtocol.writeHello(out);
+                checkBallot(WireProtocol.readFrame(in));
+                socket.setSoTimeout(0);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * O nó responde ao hello com os dados da eleição; a cédula precisa ser a mesma,
+         * senão os ordinais das opções não significam a mesma coisa nos dois lados.
+         */
+        private void checkBallot(WireProtocol.Frame greeting) throws IOException {
+            if (greeting.getType() == WireProtocol.MSG_VOTE_RESULT) {
+                throw new IOException("Node " + nodeIndex + " is busy: " + VoteResultCodec.decode(greeting).getMessage());
+            }
+            ElectionData peerData = ElectionDataCodec.decode(greeting);
+            if (!peerData.getOptions().equals(electionData.getOptions())) {
+                throw new IOException("Node " + nodeIndex + " has a different ballot: " + peerData.getOptions());
+            }
+        }
+
+        void readReplies() {
+            try {
+                while (true) {
+                    WireProtocol.Frame frame = WireProtocol.readFrame(in);
+                    PendingReply<?> reply = pending.poll();
+                    if (reply == null) {
+                        throw new StreamCorruptedException("Unexpected reply from node " + nodeIndex + ".");
+                    }
+                    try {
+                        reply.complete(frame);
+                    } catch (IOException e) {
+                        reply.future.completeExceptionally(e);
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                // Sob o lock de escrita: nenhum pedido novo entra nesta conexão depois da limpeza
+                synchronized (writeLock) {
+                    close();
+                    PendingReply<?> reply;
+                    while ((reply = pending.poll()) != null) {
+                        reply.future.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+
+        void close() {
+            broken = true;
+            try {
+                socket.close();
+            } catch (IOException e) { /* Ignore */ }
+        }
+    }
+
+    private static final class PendingReply<T> {
+        final int requestId;
+        final ReplyDecoder<T> decoder;
+        final RequestIdOf<T> requestIdOf;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        PendingReply(int requestId, ReplyDecoder<T> decoder, RequestIdOf<T> requestIdOf) {
+            this.requestId = requestId;
+            this.decoder = decoder;
+            this.requestIdOf = requestIdOf;
+        }
+
+        void complete(WireProtocol.Frame frame) throws IOException {
+            T reply = decoder.decode(frame);
+            int received = requestIdOf.requestId(reply);
+            if (received != requestId) {
+                throw new StreamCorruptedException("Reply for request " + received
+                        + " while waiting for " + requestId + ".");
+            }
+            future.complete(reply);
+        }
+    }
+}
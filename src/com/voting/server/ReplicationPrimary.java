@@ -0,0 +1,442 @@
+package com.voting.server;
+
+import com.voting.common.WireProtocol;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lado primário da replicação: envia cada voto aceito (já gravado no journal local)
+ * aos standbys conectados na porta de replicação.
+ *
+ * No modo ASYNC o voto é confirmado ao eleitor sem esperar os standbys. No modo QUORUM
+ * o servidor espera {@code quorum} standbys confirmarem o voto; se nenhum confirmar
+ * dentro do prazo, a replicação passa a assíncrona (o voto já está em disco no primário)
+ * até algum standby alcançar o primário de novo, para a queda do standby não parar a eleição.
+ *
+ * Um standby que conecta recebe primeiro a cópia de todos os votos do ledger e depois
+ * o fluxo contínuo; votos repetidos entre a cópia e o fluxo são descartados por CPF.
+ * A cópia leva só votos já gravados no journal: um voto ainda sem fsync pode ser desfeito,
+ * e chega ao standby pelo fluxo depois de gravado.
+ */
+class ReplicationPrimary implements Closeable {
+    private static final long HEARTBEAT_MILLIS = 500;
+    private static final long REPORT_SECONDS = 10;
+    private static final int COPY_CHUNK = 4096;
+    // Prazo para quem conecta na porta de replicação mandar o hello
+    private static final int HELLO_TIMEOUT_MS = 5000;
+
+    // Standby que fica tão para trás é desconectado; ao reconectar recebe a cópia completa
+    private static final long MAX_QUEUED_VOTES = 1_000_000;
+
+    private static final CompletableFuture<Void> REPLICATED = CompletableFuture.completedFuture(null);
+
+    private final VoteLedger ledger;
+    private final boolean quorumMode;
+    private final int quorum;
+    private final long ackTimeoutMillis;
+    private final ServerSocket serverSocket;
+    private final List<StandbyLink> standbys = new CopyOnWriteArrayList<>();
+
+    // Votos esperando confirmação, pela sequência do último voto de cada envio
+    private final ConcurrentSkipListMap<Long, PendingAck> pendingAcks = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService reporter;
+    private long sequence;
+    private volatile long lastSequence;
+    private volatile boolean degraded;
+    private volatile boolean running = true;
+
+    // Métricas da janela de relatório: latência do ack e espera extra em processVote
+    private final LongAdder ackSamples = new LongAdder();
+    private final LongAdder ackNanos = new LongAdder();
+    private final AtomicLong maxAckNanos = new AtomicLong();
+    private final LongAdder waitSamples = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    ReplicationPrimary(int port, VoteLedger ledger, ServerConfig config) throws IOException {
+        this.ledger = ledger;
+        this.quorumMode = config.getReplicationMode() == ServerConfig.ReplicationMode.QUORUM;
+        this.quorum = config.getReplicationQuorum();
+        this.ackTimeoutMillis = config.getReplicationAckTimeoutMillis();
+        this.serverSocket = new ServerSocket(port);
+
+        Thread acceptor = new Thread(this::acceptStandbys, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replication-report");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::report, REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+        System.out.println("Replication (" + config.getReplicationMode() + ") listening on port " + port);
+    }
+
+    /**
+     * Envia os votos aos standbys. O futuro completa quando o quórum confirmou
+     * (no modo ASYNC, ou com a replicação degradada, já vem completo).
+     */
+    CompletableFuture<Void> replicate(List<AuditEntry> entries) {
+        // Seção curta, sem E/S: numera e enfileira na mesma ordem para todos os standbys
+        synchronized (this) {
+            sequence += entries.size();
+            lastSequence = sequence;
+            PendingAck pending = null;
+            if (quorumMode && !degraded) {
+                pending = new PendingAck(quorum);
+                pendingAcks.put(sequence, pending);
+            }
+            for (StandbyLink link : standbys) link.enqueue(sequence, entries);
+            return pending == null ? REPLICATED : pending.future;
+        }
+    }
+
+    /**
+     * Espera o quórum dentro do prazo configurado. Se o prazo estourar, passa a replicar
+     * de forma assíncrona; o voto continua valendo porque já está no journal do primário.
+     */
+    void awaitQuorum(CompletableFuture<Void> replicated) {
+        if (replicated.isDone()) return;
+        long start = System.nanoTime();
+        try {
+            replicated.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            degrade("no quorum of " + quorum + " standby(s) within " + ackTimeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            degrade(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long waited = System.nanoTime() - start;
+        waitSamples.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void degrade(String reason) {
+        if (degraded) return;
+        degraded = true;
+        System.err.println("Replication degraded to asynchronous: " + reason);
+        // Quem esperava segue em frente; os standbys continuam recebendo os votos
+        for (Map.Entry<Long, PendingAck> entry : pendingAcks.entrySet()) {
+            if (pendingAcks.remove(entry.getKey(), entry.getValue())) entry.getValue().future.complete(null);
+        }
+    }
+
+    private void acknowledge(StandbyLink link, long acked) {
+        long previous = link.ackedSequence;
+        if (acked <= previous) return;
+        link.ackedSequence = acked;
+        link.sampleAckLatency(acked);
+
+        for (Map.Entry<Long, PendingAck> entry : pendingAcks.subMap(previous, false, acked, true).entrySet()) {
+            PendingAck pending = entry.getValue();
+            if (pending.acknowledge() && pendingAcks.remove(entry.getKey(), pending)) {
+                pending.future.complete(null);
+            }
+        }
+        if (degraded && quorumMode && acked >= lastSequence && caughtUpStandbys() >= quorum) {
+            degraded = false;
+            System.out.println("Replication quorum restored.");
+        }
+    }
+
+    private int caughtUpStandbys() {
+        int count = 0;
+        for (StandbyLink link : standbys) {
+            if (link.caughtUp) count++;
+        }
+        return count;
+    }
+
+    private void acceptStandbys() {
+        while (running) {
+            try {
+                // O hello é lido na thread do próprio link: quem conecta e fica calado não segura o accept
+                new StandbyLink(serverSocket.accept()).start();
+            } catch (SocketException e) {
+                if (running) System.err.println("Replication acceptor failed: " + e.getMessage());
+                return;
+            } catch (IOException e) {
+                System.err.println("Error accepting standby: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Maior atraso entre os standbys, em votos ainda não confirmados.
+     */
+    long getLagVotes() {
+        long lag = 0;
+        for (StandbyLink link : standbys) {
+            lag = Math.max(lag, lastSequence - link.ackedSequence);
+        }
+        return lag;
+    }
+
+    int getStandbyCount() {
+        return standbys.size();
+    }
+
+    private void report() {
+        long acks = ackSamples.sumThenReset();
+        long ackTotal = ackNanos.sumThenReset();
+        long ackMax = maxAckNanos.getAndSet(0);
+        long waits = waitSamples.sumThenReset();
+        long waitTotal = waitNanos.sumThenReset();
+        long waitMax = maxWaitNanos.getAndSet(0);
+        if (standbys.isEmpty() && acks == 0 && waits == 0) return;
+
+        StringBuilder line = new StringBuilder("Replication: ").append(standbys.size()).append(" standby(s)");
+        for (StandbyLink link : standbys) {
+            line.append(", ").append(link.name).append(" lag ").append(lastSequence - link.ackedSequence).append(" votes");
+        }
+        if (acks > 0) {
+            line.append(String.format("; ack latency avg %.2f ms, max %.2f ms", ackTotal / 1e6 / acks, ackMax / 1e6));
+        }
+        if (waits > 0) {
+            line.append(String.format("; processVote waited avg %.2f ms, max %.2f ms (%d waits)",
+                    waitTotal / 1e6 / waits, waitMax / 1e6, waits));
+        }
+        if (degraded) line.append(" [degraded to async]");
+        System.out.println(line);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) { /* Ignore */ }
+        reporter.shutdownNow();
+        for (StandbyLink link : standbys) link.close(null);
+        for (PendingAck pending : pendingAcks.values()) pending.future.complete(null);
+        pendingAcks.clear();
+    }
+
+    private static final class PendingAck {
+        final AtomicInteger missingAcks;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingAck(int quorum) {
+            this.missingAcks = new AtomicInteger(quorum);
+        }
+
+        /**
+         * Conta a confirmação de um standby; true quando o quórum foi atingido.
+         */
+        boolean acknowledge() {
+            return missingAcks.decrementAndGet() == 0;
+        }
+    }
+
+    /**
+     * Votos de um envio e a sequência do último deles.
+     */
+    private static final class Outgoing {
+        final long sequence;
+        final List<AuditEntry> entries;
+
+        Outgoing(long sequence, List<AuditEntry> entries) {
+            this.sequence = sequence;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Passa a enfileirar os votos para o standby a partir da sequência atual.
+     */
+    private synchronized void register(StandbyLink link) throws IOException {
+        if (!running) throw new IOException("replication is closed");
+        link.startSequence = sequence;
+        link.ackedSequence = sequence;
+        standbys.add(link);
+    }
+
+    /**
+     * Um standby conectado: uma thread envia os votos, outra lê as confirmações.
+     */
+    private final class StandbyLink {
+        final Socket socket;
+        final String name;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final BlockingQueue<Outgoing> queue = new LinkedBlockingQueue<>();
+        final AtomicLong queuedVotes = new AtomicLong();
+
+        // Envios ainda sem confirmação: sequência e instante do envio, para medir a latência do ack
+        final Queue<long[]> inFlight = new ConcurrentLinkedQueue<>();
+        long startSequence;
+        volatile long ackedSequence;
+        volatile boolean caughtUp;
+        private volatile boolean closed;
+
+        StandbyLink(Socket socket) throws IOException {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+            try {
+                socket.setTcpNoDelay(true);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void start() {
+            Thread sender = new Thread(this::send, "replication-sender-" + name);
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        /**
+         * Confere o hello e só então entra na lista de standbys e começa a ler as confirmações.
+         */
+        private void handshake() throws IOException {
+            socket.setSoTimeout(HELLO_TIMEOUT_MS);
+            ReplicationProtocol.readHello(in);
+            socket.setSoTimeout(0);
+            register(this);
+            Thread ackReader = new Thread(this::readAcks, "replication-acks-" + name);
+            ackReader.setDaemon(true);
+            ackReader.start();
+        }
+
+        void enqueue(long sequence, List<AuditEntry> entries) {
+            if (closed) return;
+            if (queuedVotes.addAndGet(entries.size()) > MAX_QUEUED_VOTES) {
+                close(new IOException("more than " + MAX_QUEUED_VOTES + " votes behind"));
+                return;
+            }
+            queue.add(new Outgoing(sequence, entries));
+        }
+
+        private void send() {
+            try {
+                handshake();
+                System.out.println("Standby " + name + " connected; copying " + ledger.totalVotes() + " votes");
+                copyLedger();
+                // Fim da cópia: a confirmação deste frame marca o standby como em dia
+                writeRecords(startSequence, Collections.emptyList());
+                long sentSequence = startSequence;
+
+                List<AuditEntry> group = new ArrayList<>();
+                while (!closed) {
+                    Outgoing first = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        writeRecords(sentSequence, Collections.emptyList());
+                        continue;
+                    }
+                    // Junta o que já está na fila em um único frame
+                    group.clear();
+                    group.addAll(first.entries);
+                    sentSequence = first.sequence;
+                    Outgoing next;
+                    while ((next = queue.peek()) != null
+                            && group.size() + next.entries.size() <= ReplicationProtocol.MAX_RECORDS_PER_FRAME) {
+                        queue.poll();
+                        group.addAll(next.entries);
+                        sentSequence = next.sequence;
+                    }
+                    queuedVotes.addAndGet(-group.size());
+                    sendGroup(group, sentSequence);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                close(e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e);
+            } catch (InterruptedException e) {
+                close(null);
+            }
+        }
+
+        /**
+         * Envia o grupo em frames que cabem no limite do protocolo; cada frame leva a
+         * sequência do seu último voto.
+         */
+        private void sendGroup(List<AuditEntry> group, long lastSequence) throws IOException {
+            int from = 0;
+            while (from < group.size()) {
+                int to = Math.min(group.size(), from + ReplicationProtocol.MAX_RECORDS_PER_FRAME);
+                long frameSequence = lastSequence - (group.size() - to);
+                inFlight.add(new long[] {frameSequence, System.nanoTime()});
+                writeRecords(frameSequence, group.subList(from, to));
+                from = to;
+            }
+        }
+
+        private void copyLedger() {
+            List<AuditEntry> chunk = new ArrayList<>(COPY_CHUNK);
+            ledger.forEachDurableVote((cpf, option, epochMillis) -> {
+                chunk.add(new AuditEntry(cpf, option, epochMillis, ledger.idempotencyKey(cpf)));
+                if (chunk.size() == COPY_CHUNK) {
+                    try {
+                        writeRecords(ReplicationProtocol.NO_SEQUENCE, chunk);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                try {
+                    writeRecords(ReplicationProtocol.NO_SEQUENCE, chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void writeRecords(long sequence, List<AuditEntry> entries) throws IOException {
+            WireProtocol.writeFrame(out, ReplicationProtocol.MSG_RECORDS, ReplicationProtocol.encodeRecords(sequence, entries));
+        }
+
+        private void readAcks() {
+            try {
+                while (!closed) {
+                    long acked = ReplicationProtocol.decodeAck(WireProtocol.readFrame(in));
+                    if (!caughtUp && acked >= startSequence) {
+                        caughtUp = true;
+                        System.out.println("Standby " + name + " caught up at sequence " + acked);
+                    }
+                    acknowledge(this, acked);
+                }
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        void sampleAckLatency(long acked) {
+            long now = System.nanoTime();
+            long[] sent;
+            while ((sent = inFlight.peek()) != null && sent[0] <= acked) {
+                inFlight.poll();
+                long latency = now - sent[1];
+                ackSamples.increment();
+                ackNanos.add(latency);
+                maxAckNanos.accumulateAndGet(latency, Math::max);
+            }
+        }
+
+        void close(IOException cause) {
+            if (closed) return;
+            closed = true;
+            standbys.remove(this);
+            if (cause != null && running) System.err.println("Standby " + name + " disconnected: " + cause.getMessage());
+            try {
+                socket.close();
+            } catch (IOException e) { /* Ignore */ }
+        }
+    }
+}
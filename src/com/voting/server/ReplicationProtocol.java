@@ -0,0 +1,91 @@
+package com.voting.server;
+
+import com.voting.common.WireProtocol;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protocolo de replicação entre o primário e os standbys, na porta de replicação.
+ *
+ * O standby abre a conexão com MAGIC e versão; depois o primário envia frames
+ * MSG_RECORDS (sequência, quantidade e votos) e o standby responde MSG_ACK com a
+ * sequência aplicada. A sequência conta votos: o frame que leva os votos até o
+ * número N tem sequência N. Frames vazios servem de heartbeat.
+ * Versão 2: cada voto leva também a chave de idempotência, para um standby promovido
+ * reconhecer os reenvios dos terminais.
+ */
+final class ReplicationProtocol {
+    static final int MAGIC = 0x564F5250; // "VORP"
+    static final int VERSION = 2;
+
+    static final byte MSG_RECORDS = 1;
+    static final byte MSG_ACK = 2;
+
+    // Sequência dos frames da cópia inicial: não são confirmados
+    static final long NO_SEQUENCE = -1;
+
+    // CPF (long), instante (long), opção (int) e chave de idempotência (long)
+    private static final int RECORD_SIZE = 28;
+    static final int MAX_RECORDS_PER_FRAME = (WireProtocol.MAX_FRAME_LENGTH - 1 - Long.BYTES - Integer.BYTES) / RECORD_SIZE;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHello(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.flush();
+    }
+
+    static void readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new StreamCorruptedException("Not a replication stream.");
+        }
+    }
+
+    static byte[] encodeRecords(long sequence, List<AuditEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Long.BYTES + Integer.BYTES + entries.size() * RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(sequence);
+        out.writeInt(entries.size());
+        for (AuditEntry entry : entries) {
+            out.writeLong(entry.getCpfNumber());
+            out.writeLong(entry.getEpochMillis());
+            out.writeInt(entry.getOption());
+            out.writeLong(entry.getIdempotencyKey());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Votos de um frame MSG_RECORDS; a sequência fica em {@code sequence[0]}.
+     */
+    static List<AuditEntry> decodeRecords(WireProtocol.Frame frame, long[] sequence) throws IOException {
+        DataInputStream in = frame.expect(MSG_RECORDS).payload();
+        sequence[0] = in.readLong();
+        int count = in.readInt();
+        if (count < 0 || count > MAX_RECORDS_PER_FRAME) {
+            throw new StreamCorruptedException("Invalid record count " + count + ".");
+        }
+        List<AuditEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long cpf = in.readLong();
+            long epochMillis = in.readLong();
+            int option = in.readInt();
+            entries.add(new AuditEntry(cpf, option, epochMillis, in.readLong()));
+        }
+        return entries;
+    }
+
+    static byte[] encodeAck(long sequence) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Long.BYTES);
+        new DataOutputStream(bytes).writeLong(sequence);
+        return bytes.toByteArray();
+    }
+
+    static long decodeAck(WireProtocol.Frame frame) throws IOException {
+        return frame.expect(MSG_ACK).payload().readLong();
+    }
+}
@@ -0,0 +1,196 @@
+package com.voting.server;
+
+import com.voting.common.WireProtocol;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lado standby da replicação: segue o primário e aplica os votos no próprio ledger
+ * (e journal), confirmando cada frame depois de gravado.
+ *
+ * Se o primário ficar sem responder por mais de {@code failoverTimeoutMillis} e não
+ * aceitar nova conexão, o standby se promove: passa a aceitar os terminais.
+ * A promoção só acontece depois de ter seguido o primário ao menos uma vez, para
+ * um standby iniciado antes do primário não assumir a eleição sozinho.
+ *
+ * Não há fencing: o standby não distingue um primário caído de uma rede partida. Numa
+ * partição, o primário antigo continua aceitando os terminais que ainda o alcançam e o
+ * mesmo CPF pode votar uma vez de cada lado. O operador precisa garantir que o primário
+ * antigo está parado (ou isolado dos terminais) antes de deixar o promovido atender.
+ */
+class ReplicationStandby implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final long RETRY_MILLIS = 200;
+    private static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final InetSocketAddress primary;
+    private final VoteLedger ledger;
+    private final VoteJournal journal;
+    private final AuditChain auditChain;
+    private final long failoverTimeoutMillis;
+    private final Runnable onApplied;
+    private final Runnable onPromote;
+    private final Thread follower;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+
+    private boolean connectedOnce;
+    private boolean following;
+    private long lastContactNanos;
+    private long lastReportNanos;
+    private volatile long appliedSequence = ReplicationProtocol.NO_SEQUENCE;
+    private volatile long lagMillis;
+
+    ReplicationStandby(InetSocketAddress primary, VoteLedger ledger, VoteJournal journal, AuditChain auditChain,
+                       long failoverTimeoutMillis, Runnable onApplied, Runnable onPromote) {
+        this.primary = primary;
+        this.ledger = ledger;
+        this.journal = journal;
+        this.auditChain = auditChain;
+        this.failoverTimeoutMillis = failoverTimeoutMillis;
+        this.onApplied = onApplied;
+        this.onPromote = onPromote;
+        this.follower = new Thread(this::follow, "replication-standby");
+        follower.setDaemon(true);
+    }
+
+    void start() {
+        follower.start();
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                stream();
+            } catch (IOException e) {
+                if (!running) return;
+                // Avisa uma vez por queda, não a cada tentativa de reconexão
+                if (following) {
+                    following = false;
+                    System.err.println("Lost primary " + primary + ": " + (e.getMessage() != null ? e.getMessage() : e));
+                }
+            }
+            if (connectedOnce && !isPrimaryAlive()) {
+                running = false;
+                System.out.println("Primary " + primary + " silent for " + failoverTimeoutMillis
+                        + " ms; promoting this standby (last applied sequence " + appliedSequence + ")");
+                System.err.println("No fencing: if " + primary + " is still running behind a network partition,"
+                        + " stop it now or the same CPF can vote on both servers.");
+                onPromote.run();
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean isPrimaryAlive() {
+        return System.nanoTime() - lastContactNanos < TimeUnit.MILLISECONDS.toNanos(failoverTimeoutMillis);
+    }
+
+    private void stream() throws IOException {
+        try (Socket s = new Socket()) {
+            socket = s;
+            s.connect(primary, CONNECT_TIMEOUT_MS);
+            s.setTcpNoDelay(true);
+            // O primário manda heartbeat a cada 500 ms; silêncio maior que isso é falha
+            s.setSoTimeout((int) failoverTimeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+            ReplicationProtocol.writeHello(out);
+            if (!connectedOnce) System.out.println("Following primary " + primary);
+            connectedOnce = true;
+            following = true;
+            lastContactNanos = System.nanoTime();
+
+            long[] sequence = new long[1];
+            while (running) {
+                List<AuditEntry> entries = ReplicationProtocol.decodeRecords(WireProtocol.readFrame(in), sequence);
+                lastContactNanos = System.nanoTime();
+                apply(entries);
+                if (sequence[0] != ReplicationProtocol.NO_SEQUENCE) {
+                    appliedSequence = sequence[0];
+                    WireProtocol.writeFrame(out, ReplicationProtocol.MSG_ACK, ReplicationProtocol.encodeAck(sequence[0]));
+                }
+                report();
+            }
+        } finally {
+            socket = null;
+        }
+    }
+
+    /**
+     * Aplica no ledger e grava no journal; só depois disso o frame é confirmado.
+     * A cada reconexão o primário manda a cópia completa do ledger: só os votos que o
+     * ledger ainda não tinha vão para o journal e para a trilha, senão cada reconexão
+     * repetiria todos os registros nos dois.
+     */
+    private void apply(List<AuditEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            // Heartbeat: nada pendente do lado do primário
+            lagMillis = 0;
+            return;
+        }
+        List<AuditEntry> applied = new ArrayList<>(entries.size());
+        for (AuditEntry entry : entries) {
+            if (ledger.restore(entry.getCpfNumber(), entry.getOption(), entry.getEpochMillis(), entry.getIdempotencyKey())) {
+                applied.add(entry);
+            }
+        }
+        lagMillis = Math.max(0, System.currentTimeMillis() - entries.get(entries.size() - 1).getEpochMillis());
+        if (applied.isEmpty()) return;
+        if (journal != null) {
+            try {
+                journal.appendAll(applied).get();
+            } catch (ExecutionException e) {
+                throw new IOException("Replicated votes not persisted: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        // O standby mantém a própria trilha, para continuar encadeando se for promovido
+        if (auditChain != null) auditChain.appendAll(applied);
+        onApplied.run();
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        if (now - lastReportNanos < REPORT_NANOS) return;
+        lastReportNanos = now;
+        System.out.println("Standby: " + ledger.totalVotes() + " votes, applied sequence " + appliedSequence
+                + ", lag " + lagMillis + " ms");
+    }
+
+    long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Atraso do último voto aplicado em relação ao instante em que o primário o aceitou.
+     */
+    long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) { /* Ignore */ }
+        }
+        follower.interrupt();
+    }
+}
@@ -0,0 +1,310 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+import com.voting.common.ElectionData;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Relatório final de uma eleição gravado direto em disco, com memória limitada:
+ * a apuração e a trilha de auditoria (todo CPF que votou, com instante e opção),
+ * em ordem de horário, em CSV e num formato binário compacto.
+ *
+ * Os votos vêm do VoteLedger, que não guarda ordem nenhuma. A ordenação é externa:
+ * blocos de até {@code runSize} votos são ordenados em memória e gravados em arquivos
+ * temporários, que depois são intercalados numa única passada. A memória usada é a de
+ * um bloco mais um buffer por arquivo temporário, qualquer que seja o número de votos.
+ *
+ * Arquivos gerados (temporários renomeados só no fim, então um relatório incompleto
+ * nunca fica com o nome final):
+ * <ul>
+ * <li>{@code report-<id>-tally.csv}: opção e votos;</li>
+ * <li>{@code report-<id>-audit.csv}: instante (epoch ms), data/hora, CPF e opção;</li>
+ * <li>{@code report-<id>.bin}: cabeçalho com a cédula, número de votos, votos
+ * (instante, CPF, opção), contagem por opção e CRC32 do que veio antes.</li>
+ * </ul>
+ */
+class ReportExporter {
+    private static final int MAGIC = 0x564F5250; // "VORP"
+    private static final int FORMAT_VERSION = 1;
+
+    static final int DEFAULT_RUN_SIZE = 1 << 18;
+
+    // A posição no bloco ocupa os bits baixos da chave de ordenação
+    private static final int INDEX_BITS = 22;
+    private static final int MAX_RUN_SIZE = 1 << INDEX_BITS;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Intervalo entre avisos de progresso, em votos
+    private static final int PROGRESS_STEP = 1 << 16;
+
+    private static final DateTimeFormatter CSV_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * Avisado da thread que exporta. A exportação passa duas vezes por cada voto
+     * (blocos e intercalação), então {@code total} é o dobro do número de votos.
+     */
+    interface ProgressListener {
+        void progress(String electionId, long done, long total);
+    }
+
+    private final String electionId;
+    private final ElectionData data;
+    private final VoteLedger ledger;
+    private final int runSize;
+
+    ReportExporter(String electionId, ElectionData data, VoteLedger ledger, int runSize) {
+        if (runSize < 1 || runSize > MAX_RUN_SIZE) {
+            throw new IllegalArgumentException("Run size must be between 1 and " + MAX_RUN_SIZE + ".");
+        }
+        this.electionId = electionId;
+        this.data = data;
+        this.ledger = ledger;
+        this.runSize = runSize;
+    }
+
+    /**
+     * Grava o relatório em {@code directory} e devolve os arquivos gerados.
+     * Deve rodar com a votação encerrada: votos que entram durante a exportação podem ficar de fora.
+     */
+    List<Path> export(Path directory, ProgressListener listener) throws IOException {
+        long total = 2L * ledger.totalVotes();
+        List<Path> runs = new ArrayList<>();
+        try {
+            long sorted = writeRuns(directory, runs, listener, total);
+            return merge(directory, runs, listener, sorted, total);
+        } finally {
+            for (Path run : runs) Files.deleteIfExists(run);
+        }
+    }
+
+    /**
+     * Primeira passada: percorre o ledger em blocos, cada um ordenado e gravado num arquivo temporário.
+     */
+    private long writeRuns(Path directory, List<Path> runs, ProgressListener listener, long total) throws IOException {
+        RunBuffer buffer = new RunBuffer(runSize);
+        long[] visited = new long[1];
+        try {
+            ledger.forEachVote((cpf, option, epochMillis) -> {
+                buffer.add(cpf, option, epochMillis);
+                if (buffer.isFull()) spill(buffer, directory, runs);
+                if (++visited[0] % PROGRESS_STEP == 0) listener.progress(electionId, visited[0], total);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (buffer.size > 0) spill(buffer, directory, runs);
+        listener.progress(electionId, visited[0], total);
+        return visited[0];
+    }
+
+    private static void spill(RunBuffer buffer, Path directory, List<Path> runs) {
+        try {
+            Path run = Files.createTempFile(directory, "report-", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+                buffer.writeSorted(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Segunda passada: intercala os blocos pelo instante e grava os três arquivos ao mesmo tempo.
+     */
+    private List<Path> merge(Path directory, List<Path> runs, ProgressListener listener, long votes, long total)
+            throws IOException {
+        Path tallyCsv = directory.resolve("report-" + electionId + "-tally.csv");
+        Path auditCsv = directory.resolve("report-" + electionId + "-audit.csv");
+        Path binary = directory.resolve("report-" + electionId + ".bin");
+        Path tallyTemp = temp(tallyCsv);
+        Path auditTemp = temp(auditCsv);
+        Path binaryTemp = temp(binary);
+
+        List<String> options = data.getOptions();
+        String[] csvOptions = new String[options.size()];
+        for (int i = 0; i < csvOptions.length; i++) csvOptions[i] = csvField(options.get(i));
+        long[] counts = new long[options.size()];
+
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        try (Writer audit = Files.newBufferedWriter(auditTemp, StandardCharsets.UTF_8);
+             FileOutputStream binaryFile = new FileOutputStream(binaryTemp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(binaryFile, BUFFER_SIZE), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(electionId);
+            out.writeUTF(data.getQuestion());
+            out.writeShort(options.size());
+            for (String option : options) out.writeUTF(option);
+            out.writeLong(votes);
+
+            audit.write("timestamp_ms,data_hora,cpf,opcao\n");
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) queue.add(reader);
+                else reader.close();
+            }
+
+            StringBuilder line = new StringBuilder(64);
+            long written = 0;
+            while (!queue.isEmpty()) {
+                RunReader next = queue.poll();
+                out.writeLong(next.epochMillis);
+                out.writeLong(next.cpf);
+                out.writeShort(next.option);
+                counts[next.option]++;
+
+                line.setLength(0);
+                line.append(next.epochMillis).append(',');
+                CSV_TIMESTAMP.formatTo(Instant.ofEpochMilli(next.epochMillis), line);
+                line.append(',').append(Cpf.format(next.cpf)).append(',').append(csvOptions[next.option]).append('\n');
+                audit.append(line);
+
+                if (next.advance()) queue.add(next);
+                else next.close();
+                if (++written % PROGRESS_STEP == 0) listener.progress(electionId, votes + written, total);
+            }
+
+            for (long count : counts) out.writeLong(count);
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            binaryFile.getChannel().force(true);
+        } finally {
+            for (RunReader reader : queue) reader.close();
+        }
+
+        try (Writer tally = Files.newBufferedWriter(tallyTemp, StandardCharsets.UTF_8)) {
+            tally.write("opcao,votos\n");
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                tally.write(csvOptions[i] + "," + counts[i] + "\n");
+                sum += counts[i];
+            }
+            tally.write("Total," + sum + "\n");
+        }
+
+        Files.move(binaryTemp, binary, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(auditTemp, auditCsv, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tallyTemp, tallyCsv, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        listener.progress(electionId, total, total);
+        return Arrays.asList(tallyCsv, auditCsv, binary);
+    }
+
+    private static Path temp(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Aspas só quando o texto da opção tem vírgula, aspas ou quebra de linha.
+     */
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Um bloco em memória, em arrays primitivos. A ordenação usa uma chave única por voto:
+     * instante relativo ao mais antigo do bloco nos bits altos e a posição no bloco nos baixos,
+     * então um {@link Arrays#sort(long[])} ordena o bloco sem criar objetos.
+     */
+    private static final class RunBuffer {
+        private final long[] cpfs;
+        private final long[] millis;
+        private final short[] options;
+        private final long[] keys;
+        private int size;
+        private long minMillis = Long.MAX_VALUE;
+
+        RunBuffer(int capacity) {
+            cpfs = new long[capacity];
+            millis = new long[capacity];
+            options = new short[capacity];
+            keys = new long[capacity];
+        }
+
+        void add(long cpf, int option, long epochMillis) {
+            cpfs[size] = cpf;
+            millis[size] = epochMillis;
+            options[size] = (short) option;
+            minMillis = Math.min(minMillis, epochMillis);
+            size++;
+        }
+
+        boolean isFull() {
+            return size == cpfs.length;
+        }
+
+        void writeSorted(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((millis[i] - minMillis) << INDEX_BITS) | i;
+            }
+            Arrays.sort(keys, 0, size);
+            int mask = (1 << INDEX_BITS) - 1;
+            for (int k = 0; k < size; k++) {
+                int i = (int) (keys[k] & mask);
+                out.writeLong(millis[i]);
+                out.writeLong(cpfs[i]);
+                out.writeShort(options[i]);
+            }
+            size = 0;
+            minMillis = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Lê um bloco gravado, um voto por vez; ordenado pelo voto atual para a intercalação.
+     */
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream in;
+        private long epochMillis;
+        private long cpf;
+        private int option;
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                epochMillis = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            cpf = in.readLong();
+            option = in.readShort();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int byTime = Long.compare(epochMillis, other.epochMillis);
+            return byTime != 0 ? byTime : Long.compare(cpf, other.cpf);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.voting.server;
+
+/**
+ * Quem acompanha a apuração publicada pelo servidor: a ServerGUI na mesma JVM,
+ * o {@link MonitorEndpoint} que repassa a uma GUI em outro processo, ou um painel próprio.
+ *
+ * Chamado pela thread de publicação, no máximo {@code resultsPublishRate} vezes por segundo
+ * por eleição e nunca no caminho do voto. Deve retornar rápido (ex.: repassar à thread do
+ * Swing); uma publicação lenta só atrasa as próximas publicações.
+ */
+public interface ResultsListener {
+
+    void resultsPublished(ResultsSnapshot snapshot);
+}
@@ -0,0 +1,72 @@
+package com.voting.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Publica os resultados numa taxa fixa (ex.: 10 vezes por segundo).
+ * Os votos só marcam que algo mudou; várias mudanças entre dois ticks viram uma única publicação.
+ * Os publicadores de todas as eleições dividem a mesma thread ({@link #newScheduler()}).
+ */
+class ResultsPublisher {
+    private final Supplier<ResultsSnapshot> snapshotSupplier;
+    private final Consumer<ResultsSnapshot> listener;
+    private final long periodMillis;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> ticks;
+
+    ResultsPublisher(Supplier<ResultsSnapshot> snapshotSupplier, Consumer<ResultsSnapshot> listener, int ratePerSecond,
+                     ScheduledExecutorService scheduler) {
+        this.snapshotSupplier = snapshotSupplier;
+        this.listener = listener;
+        this.periodMillis = Math.max(1, 1000 / Math.max(1, ratePerSecond));
+        this.scheduler = scheduler;
+    }
+
+    static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "results-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    synchronized void start() {
+        ticks = scheduler.scheduleAtFixedRate(this::publishIfDirty, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chamado no caminho do voto: custo de uma escrita atômica, sem montar nada.
+     */
+    void markDirty() {
+        if (!dirty.get()) dirty.set(true);
+    }
+
+    /**
+     * Cancela os ticks; o scheduler continua servindo as outras eleições.
+     */
+    synchronized void stop() {
+        if (ticks == null) return;
+        ticks.cancel(false);
+        ticks = null;
+        // Última publicação para a tela refletir os votos finais
+        publishIfDirty();
+    }
+
+    // synchronized: a última publicação do stop() não pode se cruzar com um tick em andamento
+    private synchronized void publishIfDirty() {
+        if (!dirty.getAndSet(false)) return;
+        try {
+            listener.accept(snapshotSupplier.get());
+        } catch (RuntimeException e) {
+            // Uma falha na tela não pode parar as próximas publicações
+            e.printStackTrace();
+        }
+    }
+}
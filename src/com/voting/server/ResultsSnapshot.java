@@ -0,0 +1,46 @@
+package com.voting.server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fotografia imutável dos resultados publicada para a GUI.
+ * Traz apenas as entradas de auditoria novas desde a publicação anterior.
+ */
+public final class ResultsSnapshot {
+    private final String electionId;
+    private final String question;
+    private final Map<String, Long> voteCounts;
+    private final long totalVotes;
+    private final List<AuditEntry> newAuditEntries;
+
+    public ResultsSnapshot(String electionId, String question, Map<String, Long> voteCounts, long totalVotes,
+                           List<AuditEntry> newAuditEntries) {
+        this.electionId = electionId;
+        this.question = question;
+        this.voteCounts = Collections.unmodifiableMap(voteCounts);
+        this.totalVotes = totalVotes;
+        this.newAuditEntries = Collections.unmodifiableList(newAuditEntries);
+    }
+
+    public String getElectionId() {
+        return electionId;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public Map<String, Long> getVoteCounts() {
+        return voteCounts;
+    }
+
+    public long getTotalVotes() {
+        return totalVotes;
+    }
+
+    public List<AuditEntry> getNewAuditEntries() {
+        return newAuditEntries;
+    }
+}
@@ -1,52 +1,287 @@
 package com.voting.server;
 
+import com.voting.common.BatchResult;
 import com.voting.common.ElectionData;
+import com.voting.common.TallyResult;
+import com.voting.common.Tls;
 import com.voting.common.Vote;
+import com.voting.common.VoteRequest;
+import com.voting.common.VoteResult;
+import com.voting.common.VoteStatus;
+import com.voting.common.WireProtocol;
 
+import javax.net.ssl.SSLContext;
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Lógica principal do servidor.
  * Agora registra a DATA e HORA de cada voto.
  */
 public class Server implements Runnable {
-    private static final int PORT = 12345;
+    // Tempo máximo para descobrir o protocolo de um cliente recusado por excesso de conexões
+    private static final int BUSY_REPLY_TIMEOUT_MS = 500;
+
+    // Quanto um voto repassado espera a resposta do nó dono do CPF
+    private static final long FORWARD_TIMEOUT_MS = 5000;
+
+    // Último recurso para um journal que não responde; um group commit saudável leva milissegundos
+    private static final long DURABLE_TIMEOUT_SECONDS = 30;
+
+    private final ServerConfig config;
     private ServerSocket serverSocket;
-    private boolean isRunning = true;
-    private final ServerGUI gui;
+    private volatile boolean isRunning = true;
 
-    private final ElectionData electionData;
-    private final Map<String, Integer> voteCounts = new ConcurrentHashMap<>();
-    
-    // MUDANÇA PRINCIPAL: Map<CPF, DataHora> em vez de Set<CPF>
-    // ConcurrentHashMap garante segurança em multithreading
-    private final Map<String, String> votedCPFs = new ConcurrentHashMap<>();
+    // GUI, monitor remoto ou nenhum (headless); sem nenhum, a auditoria nem é enfileirada
+    private final List<ResultsListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Executa os ClientHandlers; o semáforo limita quantas conexões existem ao mesmo tempo
+    private ExecutorService handlerExecutor;
+    private Semaphore connectionPermits;
+
+    // Modo POOLED: sessões que podem prender um worker ao mesmo tempo (null no modo VIRTUAL).
+    // Fica abaixo do número de workers para a fila de conexões nunca parar esperando uma sessão acabar
+    private Semaphore sessionPermits;
+
+    // Conexões novas por IP, conferidas no accept; null sem limite configurado
+    private final ConnectionRateLimiter rateLimiter;
+
+    // Contexto TLS da porta dos terminais e das conexões com os outros nós; null = texto puro
+    private final SSLContext tls;
+
+    // Responde "server busy" (ou "standby") fora da thread do accept; se também estiver cheio, a conexão é fechada
+    private final ExecutorService busyResponder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(64),
+            r -> {
+                Thread t = new Thread(r, "busy-responder");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // Eleições hospedadas, pelo id; cada uma com cédula, CPFs, contagem e journal próprios
+    private final ConcurrentMap<String, Election> elections = new ConcurrentHashMap<>();
+
+    // A eleição dos terminais antigos, do cluster e da replicação
+    private final Election defaultElection;
 
-    public Server(ServerGUI gui) {
-        this.gui = gui;
-        String question = "Qual a melhor linguagem de programacao?";
-        List<String> options = Arrays.asList("Java", "Python", "JavaScript", "C++");
-        
-        this.electionData = new ElectionData(question, options);
-        options.forEach(option -> voteCounts.put(option, 0));
-        updateGUI();
+    // Journal da eleição padrão; null quando a persistência está desligada na configuração
+    private final Path journalPath;
+
+    // Atualizam a GUI e os observadores fora do caminho do voto, divididos por todas as eleições
+    private final ScheduledExecutorService publisherScheduler = ResultsPublisher.newScheduler();
+    private final ExecutorService observerWriters = ObserverHub.newWriterPool();
+    private final ScheduledExecutorService observerSweeper = ObserverHub.newSweeper();
+
+    // Partições e vizinhos no modo cluster; null em servidor único
+    private final Cluster cluster;
+
+    // Replicação: envio aos standbys (primário) ou acompanhamento do primário (standby)
+    private volatile ReplicationPrimary replication;
+    private ReplicationStandby standby;
+
+    // Falso enquanto este servidor é um standby não promovido
+    private volatile boolean acceptingVotes = true;
+
+    // Contadores publicados via JMX e, se configurado, por HTTP
+    private final ServerMetrics metrics;
+    private MetricsEndpoint metricsEndpoint;
+
+    // Repassa a apuração às GUIs conectadas pelo loopback; null quando desligado
+    private MonitorEndpoint monitorEndpoint;
+
+    /**
+     * Servidor sem interface: ninguém acompanha a apuração até um {@link ResultsListener} ser adicionado.
+     */
+    public Server(ServerConfig config) throws IOException {
+        this(null, config);
+    }
+
+    /**
+     * @param listener quem recebe as publicações desde o início (ex.: a ServerGUI), ou null
+     */
+    public Server(ResultsListener listener, ServerConfig config) throws IOException {
+        this.config = config;
+        if (listener != null) listeners.add(listener);
+        this.journalPath = config.getJournalFile() == null ? null : Paths.get(config.getJournalFile());
+        this.metrics = new ServerMetrics(config.getVoteLogPerSecond(), elections.values());
+        // Criado uma vez: o cache de sessões TLS precisa ser o mesmo para todas as conexões
+        this.tls = config.isTlsEnabled()
+                ? Tls.serverContext(Paths.get(config.getTlsKeyStore()), config.getTlsKeyStorePassword().toCharArray(),
+                        Paths.get(config.getTlsTrustStore()), config.getTlsSessionTimeoutSeconds(), config.getTlsSessionCacheSize())
+                : null;
+        this.rateLimiter = config.getConnectionsPerSecondPerIp() > 0
+                ? new ConnectionRateLimiter(config.getConnectionsPerSecondPerIp(), config.getConnectionBurstPerIp())
+                : null;
+
+        // O cluster precisa da eleição padrão antes de ela começar a publicar
+        ElectionData defaultData = new ElectionData(config.getDefaultQuestion(), config.getDefaultOptions());
+        Election.validate(WireProtocol.DEFAULT_ELECTION, defaultData);
+        if (config.isClustered()) {
+            cluster = new Cluster(config.getClusterNodes(), config.getClusterNodeIndex(), defaultData, tls);
+            System.out.println("Cluster node " + cluster.getSelfIndex() + " of " + cluster.getNodeCount()
+                    + (cluster.isCoordinator() ? " (coordinator)" : ""));
+        } else {
+            cluster = null;
+        }
+        this.defaultElection = openElection(WireProtocol.DEFAULT_ELECTION, defaultData);
+        if (cluster != null && cluster.isCoordinator()) cluster.startTallyPolling(defaultElection::markDirty);
+
+        // Eleições criadas em execuções anteriores e, depois, as novas da configuração
+        if (journalPath != null) {
+            for (String id : Election.listBallots(journalPath)) {
+                openElection(id, Election.readBallot(journalPath, id));
+            }
+        }
+        for (Map.Entry<String, ElectionData> ballot : config.getElections().entrySet()) {
+            if (!elections.containsKey(ballot.getKey())) {
+                createElection(ballot.getKey(), ballot.getValue().getQuestion(), ballot.getValue().getOptions());
+            }
+        }
+
+        if (config.getReplicaOf() != null) {
+            acceptingVotes = false;
+            standby = new ReplicationStandby(Cluster.parseAddress(config.getReplicaOf()), defaultElection.getLedger(),
+                    defaultElection.getJournal(), defaultElection.getAuditChain(), config.getFailoverTimeoutMillis(), defaultElection::markDirty,
+                    this::promote);
+            standby.start();
+            System.out.println("Standby of " + config.getReplicaOf() + ": terminals are refused until promotion");
+        } else if (config.getReplicationPort() > 0) {
+            replication = new ReplicationPrimary(config.getReplicationPort(), defaultElection.getLedger(), config);
+        }
+    }
+
+    /**
+     * Cria uma eleição com o servidor no ar. A cédula é gravada antes de a eleição aceitar
+     * votos, para ela ser recriada (e o journal dela reaplicado) quando o servidor reiniciar.
+     *
+     * @throws IllegalArgumentException se o id já existe ou a cédula é inválida
+     */
+    public synchronized void createElection(String id, String question, List<String> options) throws IOException {
+        ElectionData data = new ElectionData(question, new ArrayList<>(options));
+        Election.validate(id, data);
+        if (elections.containsKey(id)) {
+            throw new IllegalArgumentException("Election " + id + " already exists.");
+        }
+        if (journalPath != null) Election.writeBallot(journalPath, id, data);
+        openElection(id, data);
+        System.out.println("Election " + id + " created with " + options.size() + " options");
+    }
+
+    private Election openElection(String id, ElectionData data) throws IOException {
+        Election election = new Election(id, data,
+                new ObserverHub(data.getOptions().size(), config.getMaxObservers(), observerWriters, observerSweeper));
+        election.getLedger().setAuditFeed(!listeners.isEmpty());
+        if (journalPath != null) {
+            boolean isDefault = id.equals(WireProtocol.DEFAULT_ELECTION);
+            election.recover(Election.journalPath(journalPath, id, isDefault), config);
+        }
+        election.startPublishing(new ResultsPublisher(() -> snapshotResults(election),
+                snapshot -> publishResults(election, snapshot), config.getResultsPublishRate(), publisherScheduler));
+        elections.put(id, election);
+        return election;
+    }
+
+    public void addResultsListener(ResultsListener listener) {
+        listeners.add(listener);
+        for (Election election : elections.values()) election.getLedger().setAuditFeed(true);
+        // O novo ouvinte recebe a contagem atual já no próximo tick
+        republishResults();
+    }
+
+    public void removeResultsListener(ResultsListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            for (Election election : elections.values()) election.getLedger().setAuditFeed(false);
+        }
+    }
+
+    /**
+     * Publica a contagem de todas as eleições no próximo tick, mesmo sem votos novos.
+     */
+    void republishResults() {
+        for (Election election : elections.values()) election.markDirty();
+    }
+
+    /**
+     * Grava o relatório final de cada eleição (ver {@link ReportExporter}) em {@code directory}.
+     * Feito para depois de {@link #stopServer()}; com milhões de votos leva alguns segundos,
+     * então não deve rodar na thread do Swing.
+     */
+    List<Path> exportReports(Path directory, ReportExporter.ProgressListener listener) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        for (String id : getElectionIds()) {
+            Election election = elections.get(id);
+            ReportExporter exporter = new ReportExporter(id, election.getData(), election.getLedger(),
+                    config.getReportRunSize());
+            files.addAll(exporter.export(directory, listener));
+        }
+        return files;
+    }
+
+    /**
+     * Ids das eleições hospedadas, a padrão primeiro.
+     */
+    public List<String> getElectionIds() {
+        List<String> ids = new ArrayList<>(new TreeSet<>(elections.keySet()));
+        ids.remove(WireProtocol.DEFAULT_ELECTION);
+        ids.add(0, WireProtocol.DEFAULT_ELECTION);
+        return ids;
+    }
+
+    /**
+     * Chamado pelo standby quando o primário caiu: passa a aceitar votos e,
+     * se houver porta de replicação, aceita standbys novos.
+     */
+    private synchronized void promote() {
+        acceptingVotes = true;
+        System.out.println("Promoted to primary; accepting terminals on port " + config.getPort());
+        if (config.getReplicationPort() > 0) {
+            try {
+                replication = new ReplicationPrimary(config.getReplicationPort(), defaultElection.getLedger(), config);
+            } catch (IOException e) {
+                System.err.println("Replication not available after promotion: " + e.getMessage());
+            }
+        }
     }
 
     @Override
     public void run() {
         try {
-            serverSocket = new ServerSocket(PORT);
-            System.out.println("Server started on port " + PORT);
+            startHandlerExecutor();
+            startMetrics();
+            // Com TLS, o handshake só acontece na primeira leitura, já na thread do handler
+            serverSocket = tls == null
+                    ? new ServerSocket(config.getPort(), config.getAcceptBacklog())
+                    : tls.getServerSocketFactory().createServerSocket(config.getPort(), config.getAcceptBacklog());
+            System.out.println("Server started on port " + config.getPort() + (tls == null ? "" : " (TLS)"));
             while (isRunning) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    // new Thread para cada cliente (Multithreading)
-                    new Thread(new ClientHandler(clientSocket)).start();
+                    dispatch(clientSocket);
                 } catch (SocketException e) {
                     if (!isRunning) System.out.println("Server socket closed.");
                     else e.printStackTrace();
@@ -64,69 +299,553 @@ public class Server implements Runnable {
         try {
             if (serverSocket != null && !serverSocket.isClosed()) serverSocket.close();
         } catch (IOException e) { e.printStackTrace(); }
+        if (handlerExecutor != null) handlerExecutor.shutdown();
+        busyResponder.shutdown();
+        if (cluster != null) cluster.close();
+        if (standby != null) standby.close();
+        if (replication != null) replication.close();
+        for (Election election : elections.values()) election.close();
+        publisherScheduler.shutdown();
+        observerWriters.shutdownNow();
+        observerSweeper.shutdownNow();
+        metrics.close();
+        if (metricsEndpoint != null) metricsEndpoint.close();
+        if (monitorEndpoint != null) monitorEndpoint.close();
     }
 
-    private void processVote(Vote vote) {
-        // Bloco sincronizado para garantir integridade dos dados (Thread Safety)
-        synchronized (this) {
-            // Verifica se a CHAVE (CPF) já existe
-            if (votedCPFs.containsKey(vote.getCpf())) {
-                throw new IllegalStateException("This CPF has already voted.");
+    /**
+     * Cria o executor conforme o modo configurado.
+     * Se a JVM não suportar virtual threads, cai para o pool fixo.
+     */
+    private void startHandlerExecutor() {
+        if (config.getExecutionMode() == ServerConfig.ExecutionMode.VIRTUAL) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                handlerExecutor = (ExecutorService) factory.invoke(null);
+                connectionPermits = new Semaphore(config.getMaxConnections());
+                System.out.println("Handler mode: VIRTUAL (max " + config.getMaxConnections() + " connections)");
+                return;
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads not available on this JVM, using POOLED mode.");
             }
-            if (!voteCounts.containsKey(vote.getChosenOption())) {
-                 throw new IllegalArgumentException("Invalid voting option.");
+        }
+
+        int workers = config.getWorkerThreads();
+        AtomicInteger threadIds = new AtomicInteger();
+        handlerExecutor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "client-handler-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        // Workers + fila de espera: acima disso a conexão é recusada com "server busy"
+        connectionPermits = new Semaphore(workers + config.getBacklog());
+        int sessions = workers - 1;
+        sessionPermits = new Semaphore(sessions);
+        System.out.println("Handler mode: POOLED (" + workers + " workers, backlog " + config.getBacklog()
+                + ", up to " + sessions + " sessions)");
+        if (sessions == 0) System.out.println("With a single worker every session is refused with \"server busy\".");
+    }
+
+    private void startMetrics() {
+        if (handlerExecutor instanceof ThreadPoolExecutor) {
+            BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) handlerExecutor).getQueue();
+            metrics.setQueueDepth(queue::size);
+        }
+        metrics.start(config.getPort());
+        if (config.getMetricsPort() > 0) {
+            try {
+                metricsEndpoint = new MetricsEndpoint(config.getMetricsPort(), metrics);
+            } catch (IOException e) {
+                System.err.println("Metrics endpoint not started: " + e.getMessage());
+            }
+        }
+        if (config.getMonitorPort() > 0) {
+            try {
+                monitorEndpoint = new MonitorEndpoint(config.getMonitorPort(), this);
+            } catch (IOException e) {
+                System.err.println("Monitor endpoint not started: " + e.getMessage());
             }
-            
-            // Captura a data e hora atual
-            String timeStamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-            
-            // Salva no mapa: CPF -> Data/Hora
-            votedCPFs.put(vote.getCpf(), timeStamp);
-            
-            voteCounts.compute(vote.getChosenOption(), (key, val) -> val + 1);
-            System.out.println("Vote received from CPF " + vote.getCpf() + " at " + timeStamp);
-            
-            updateGUI();
         }
     }
-    
-    private void updateGUI() {
-        int totalVotes = votedCPFs.size();
-        // Envia o Map completo para a GUI
-        gui.updateResults(electionData.getQuestion(), voteCounts, totalVotes, votedCPFs);
+
+    /**
+     * Entrega a conexão a um handler ou, se o limite foi atingido, responde "server busy".
+     * Nunca cria threads além do limite configurado. Um IP acima da taxa é fechado
+     * na hora, sem resposta: atendê-lo custaria o que o limite quer evitar.
+     */
+    private void dispatch(Socket clientSocket) {
+        if (rateLimiter != null && !rateLimiter.tryAcquire(clientSocket.getInetAddress())) {
+            metrics.connectionShed(ServerMetrics.ShedReason.RATE_LIMIT);
+            closeQuietly(clientSocket);
+            return;
+        }
+        if (!acceptingVotes) {
+            reject(clientSocket, VoteStatus.NOT_PRIMARY);
+            return;
+        }
+        if (!connectionPermits.tryAcquire()) {
+            metrics.connectionShed(ServerMetrics.ShedReason.CAPACITY);
+            reject(clientSocket, VoteStatus.SERVER_BUSY);
+            return;
+        }
+        try {
+            handlerExecutor.execute(new ClientHandler(clientSocket));
+        } catch (RejectedExecutionException e) {
+            connectionPermits.release();
+            metrics.connectionShed(ServerMetrics.ShedReason.CAPACITY);
+            reject(clientSocket, VoteStatus.SERVER_BUSY);
+        }
+    }
+
+    private void reject(Socket clientSocket, VoteStatus reason) {
+        try {
+            busyResponder.execute(() -> replyRejected(clientSocket, reason));
+        } catch (RejectedExecutionException e) {
+            closeQuietly(clientSocket);
+        }
+    }
+
+    private void replyRejected(Socket clientSocket, VoteStatus reason) {
+        // A mensagem vai no lugar dos dados da eleição, no protocolo que o cliente falar
+        try (Socket socket = clientSocket) {
+            socket.setSoTimeout(BUSY_REPLY_TIMEOUT_MS);
+            try (ClientConnection connection = ClientConnection.open(socket, id -> defaultElection)) {
+                connection.sendResult(new VoteResult(reason));
+            }
+        } catch (IOException e) {
+            System.err.println("Error rejecting client: " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) { /* Ignore */ }
+    }
+
+    VoteResult processVote(Vote vote) {
+        return processVote(defaultElection, vote);
+    }
+
+    VoteResult processVote(Election election, Vote vote) {
+        long start = System.nanoTime();
+        VoteResult result = registerVote(election, vote);
+        metrics.recordVote(result.getStatus(), System.nanoTime() - start);
+        return result;
+    }
+
+    private VoteResult registerVote(Election election, Vote vote) {
+        // As partições do cluster valem só para a eleição padrão
+        if (cluster != null && election == defaultElection) {
+            int owner = cluster.ownerOf(vote.getCpfNumber());
+            if (owner != cluster.getSelfIndex()) return forwardVote(owner, vote);
+        }
+
+        // Sem synchronized: o VoteLedger garante um único voto por CPF de forma atômica
+        VoteLedger ledger = election.getLedger();
+        VoteJournal journal = election.getJournal();
+        AuditEntry entry;
+        try {
+            entry = ledger.register(vote);
+        } catch (VoteRejectedException e) {
+            if (e.getStatus() == VoteStatus.ALREADY_VOTED && ledger.isReplay(vote)) {
+                return new VoteResult(awaitReplay(election, Collections.singletonList(vote)) ? VoteStatus.SUCCESS : VoteStatus.ERROR);
+            }
+            return new VoteResult(e.getStatus());
+        }
+
+        // "SUCCESS" só depois do voto estar em disco
+        CompletableFuture<Void> durable = journal == null ? null : journal.append(entry);
+        ledger.rememberIdempotencyKeys(Collections.singletonList(entry));
+        if (durable != null && !awaitDurable(durable)) {
+            ledger.revoke(entry);
+            return new VoteResult(VoteStatus.ERROR);
+        }
+        ledger.publishAudit(Collections.singletonList(entry));
+        // Só enfileira: o hash é calculado em lote pela thread da trilha
+        AuditChain auditChain = election.getAuditChain();
+        if (auditChain != null) auditChain.append(entry);
+        // Só o que já está no journal local segue para os standbys
+        ReplicationPrimary replication = this.replication;
+        if (replication != null && election == defaultElection) {
+            replication.awaitQuorum(replication.replicate(Collections.singletonList(entry)));
+        }
+        if (metrics.shouldLogVote()) {
+            System.out.println("Vote received from CPF " + vote.getCpf() + " at " + entry.getTimeStamp()
+                    + (election == defaultElection ? "" : " in election " + election.getId()));
+        }
+
+        election.markDirty();
+        return new VoteResult(VoteStatus.SUCCESS);
+    }
+
+    /**
+     * Repassa o voto ao nó dono do CPF e devolve a resposta dele.
+     */
+    private VoteResult forwardVote(int owner, Vote vote) {
+        BatchResult result = awaitForward(owner, cluster.peer(owner).forward(Collections.singletonList(vote)));
+        return new VoteResult(result == null ? VoteStatus.ERROR : result.getStatus(0));
+    }
+
+    /**
+     * Aplica um lote de uma vez; a GUI é avisada uma única vez para o lote todo.
+     * No cluster, os votos de CPFs alheios seguem em um lote por nó dono.
+     */
+    private BatchResult processBatch(Election election, VoteRequest batch) {
+        VoteStatus[] statuses;
+        if (batch.isForwarded()) {
+            statuses = registerForwarded(election, batch.getVotes());
+        } else if (cluster == null || election != defaultElection) {
+            statuses = registerLocally(election, batch.getVotes());
+        } else {
+            statuses = routeBatch(batch.getVotes());
+        }
+        BatchResult result = new BatchResult(batch.getRequestId(), statuses);
+        // Votos repassados já foram contados no nó que recebeu o lote do terminal
+        if (!batch.isForwarded()) metrics.recordBatch(statuses);
+        if (metrics.shouldLogVote()) {
+            System.out.println((batch.isForwarded() ? "Forwarded batch of " : "Batch of ") + statuses.length
+                    + " votes received, " + result.count(VoteStatus.SUCCESS) + " accepted"
+                    + (election == defaultElection ? "" : " in election " + election.getId()));
+        }
+
+        election.markDirty();
+        return result;
+    }
+
+    /**
+     * Lote repassado por outro nó: só entram os CPFs desta partição. Um CPF de outro dono
+     * seria deduplicado em dois ledgers (o mesmo eleitor votando duas vezes no cluster),
+     * então recebe "ERROR"; isso só acontece se os nós não têm a mesma lista de nós.
+     */
+    private VoteStatus[] registerForwarded(Election election, List<Vote> votes) {
+        VoteStatus[] statuses = new VoteStatus[votes.size()];
+        List<Integer> positions = new ArrayList<>(votes.size());
+        List<Vote> owned = new ArrayList<>(votes.size());
+        for (int i = 0; i < votes.size(); i++) {
+            if (election == defaultElection && cluster.isLocal(votes.get(i).getCpfNumber())) {
+                positions.add(i);
+                owned.add(votes.get(i));
+            } else {
+                statuses[i] = VoteStatus.ERROR;
+            }
+        }
+        if (owned.size() < votes.size()) {
+            System.err.println((votes.size() - owned.size()) + " forwarded votes refused: CPFs owned by another node"
+                    + (election == defaultElection ? "" : " or election " + election.getId() + " is not partitioned"));
+        }
+        VoteStatus[] local = registerLocally(election, owned);
+        for (int i = 0; i < local.length; i++) {
+            statuses[positions.get(i)] = local[i];
+        }
+        return statuses;
+    }
+
+    private VoteStatus[] registerLocally(Election election, List<Vote> votes) {
+        VoteLedger ledger = election.getLedger();
+        VoteJournal journal = election.getJournal();
+        List<AuditEntry> accepted = new ArrayList<>();
+        VoteStatus[] statuses = ledger.registerBatch(votes, accepted);
+
+        // Um único registro de group commit para o lote inteiro
+        CompletableFuture<Void> durable = journal == null || accepted.isEmpty() ? null : journal.appendAll(accepted);
+        ledger.rememberIdempotencyKeys(accepted);
+        if (durable != null && !awaitDurable(durable)) {
+            accepted.forEach(ledger::revoke);
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i] == VoteStatus.SUCCESS) statuses[i] = VoteStatus.ERROR;
+            }
+            return statuses;
+        }
+        resolveReplays(election, votes, statuses);
+        if (!accepted.isEmpty()) ledger.publishAudit(accepted);
+        AuditChain auditChain = election.getAuditChain();
+        if (auditChain != null && !accepted.isEmpty()) auditChain.appendAll(accepted);
+        ReplicationPrimary replication = this.replication;
+        if (replication != null && election == defaultElection && !accepted.isEmpty()) {
+            replication.awaitQuorum(replication.replicate(accepted));
+        }
+        return statuses;
+    }
+
+    /**
+     * Troca "CPF já votou" por "SUCCESS" nos votos do lote que são reenvios de um voto aceito.
+     */
+    private void resolveReplays(Election election, List<Vote> votes, VoteStatus[] statuses) {
+        List<Integer> replays = new ArrayList<>();
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == VoteStatus.ALREADY_VOTED && election.getLedger().isReplay(votes.get(i))) replays.add(i);
+        }
+        if (replays.isEmpty()) return;
+        List<Vote> replayed = new ArrayList<>(replays.size());
+        for (int i : replays) replayed.add(votes.get(i));
+        VoteStatus status = awaitReplay(election, replayed) ? VoteStatus.SUCCESS : VoteStatus.ERROR;
+        for (int i : replays) statuses[i] = status;
+    }
+
+    /**
+     * Um reenvio só recebe "SUCCESS" depois de o voto original estar no journal: a chave é
+     * publicada depois de a gravação ser agendada, então basta esperar tudo que já está na fila.
+     * Se a gravação original falhou, o voto foi desfeito e o reenvio recebe "ERROR" para tentar de novo.
+     */
+    private boolean awaitReplay(Election election, List<Vote> votes) {
+        VoteJournal journal = election.getJournal();
+        if (journal != null && !awaitDurable(journal.barrier())) return false;
+        for (Vote vote : votes) {
+            if (!election.getLedger().isReplay(vote)) return false;
+        }
+        metrics.voteReplayed(votes.size());
+        return true;
+    }
+
+    /**
+     * Separa o lote por nó dono; os repasses saem antes da parte local ser aplicada,
+     * então os nós trabalham em paralelo. Os status voltam na ordem original do lote.
+     */
+    private VoteStatus[] routeBatch(List<Vote> votes) {
+        int nodes = cluster.getNodeCount();
+        List<List<Integer>> positions = new ArrayList<>(nodes);
+        List<List<Vote>> votesByNode = new ArrayList<>(nodes);
+        for (int node = 0; node < nodes; node++) {
+            positions.add(new ArrayList<>());
+            votesByNode.add(new ArrayList<>());
+        }
+        for (int i = 0; i < votes.size(); i++) {
+            int owner = cluster.ownerOf(votes.get(i).getCpfNumber());
+            positions.get(owner).add(i);
+            votesByNode.get(owner).add(votes.get(i));
+        }
+
+        List<CompletableFuture<BatchResult>> forwards = new ArrayList<>(nodes);
+        for (int node = 0; node < nodes; node++) {
+            boolean remote = node != cluster.getSelfIndex() && !votesByNode.get(node).isEmpty();
+            forwards.add(remote ? cluster.peer(node).forward(votesByNode.get(node)) : null);
+        }
+
+        VoteStatus[] statuses = new VoteStatus[votes.size()];
+        int self = cluster.getSelfIndex();
+        VoteStatus[] local = registerLocally(defaultElection, votesByNode.get(self));
+        for (int i = 0; i < local.length; i++) {
+            statuses[positions.get(self).get(i)] = local[i];
+        }
+        for (int node = 0; node < nodes; node++) {
+            if (forwards.get(node) == null) continue;
+            BatchResult result = awaitForward(node, forwards.get(node));
+            List<Integer> nodePositions = positions.get(node);
+            for (int i = 0; i < nodePositions.size(); i++) {
+                statuses[nodePositions.get(i)] = result == null ? VoteStatus.ERROR : result.getStatus(i);
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Espera a resposta do nó dono; null se ele não respondeu a tempo.
+     */
+    private static BatchResult awaitForward(int owner, Future<BatchResult> forward) {
+        try {
+            return forward.get(FORWARD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            System.err.println("Vote not forwarded to node " + owner + ": " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            System.err.println("Vote not forwarded to node " + owner + ": no reply in " + FORWARD_TIMEOUT_MS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static boolean awaitDurable(Future<Void> write) {
+        try {
+            write.get(DURABLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            System.err.println("Vote not persisted: " + e.getCause().getMessage());
+            return false;
+        } catch (TimeoutException e) {
+            System.err.println("Vote not persisted: journal did not answer in " + DURABLE_TIMEOUT_SECONDS + " s");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private ResultsSnapshot snapshotResults(Election election) {
+        // Apenas as entradas novas da auditoria: a GUI acrescenta em vez de redesenhar tudo
+        VoteLedger ledger = election.getLedger();
+        ElectionData electionData = election.getData();
+        List<AuditEntry> newEntries = ledger.drainNewAuditEntries();
+        if (cluster == null || !cluster.isCoordinator() || election != defaultElection) {
+            return new ResultsSnapshot(election.getId(), electionData.getQuestion(), ledger.snapshotCounts(),
+                    ledger.totalVotes(), newEntries);
+        }
+
+        // Coordenador: contagem própria somada à última conhecida de cada nó
+        Map<String, Long> counts = new LinkedHashMap<>();
+        long[] local = ledger.counts();
+        long total = 0;
+        for (int option = 0; option < local.length; option++) {
+            long count = local[option] + cluster.remoteCount(option);
+            counts.put(electionData.getOptions().get(option), count);
+            total += count;
+        }
+        return new ResultsSnapshot(election.getId(), electionData.getQuestion(), counts, total, newEntries);
+    }
+
+    private void publishResults(Election election, ResultsSnapshot snapshot) {
+        long[] counts = new long[snapshot.getVoteCounts().size()];
+        int option = 0;
+        for (long count : snapshot.getVoteCounts().values()) counts[option++] = count;
+        election.getObservers().publish(counts);
+        for (ResultsListener listener : listeners) {
+            try {
+                listener.resultsPublished(snapshot);
+            } catch (RuntimeException e) {
+                // Um ouvinte com defeito não pode deixar os outros sem publicação
+                e.printStackTrace();
+            }
+        }
     }
 
     private class ClientHandler implements Runnable {
         private final Socket clientSocket;
+        // Verdadeiro depois do primeiro pedido: a espera seguinte é a de uma sessão ociosa
+        private boolean idle;
+        // Verdadeiro enquanto a conexão ocupa uma das vagas de sessão do modo POOLED
+        private boolean holdsSession;
+
         public ClientHandler(Socket socket) { this.clientSocket = socket; }
 
         @Override
         public void run() {
-            try (ObjectOutputStream out = new ObjectOutputStream(clientSocket.getOutputStream());
-                 ObjectInputStream in = new ObjectInputStream(clientSocket.getInputStream())) {
-                
-                // 1. Envia dados da eleição
-                out.writeObject(electionData);
-                out.flush();
-                
-                // 2. Recebe o voto
-                Vote vote = (Vote) in.readObject();
-                
-                // 3. Processa
+            metrics.connectionOpened();
+            // Verdadeiro quando a conexão passou para o ObserverHub e não deve ser fechada aqui
+            boolean handedOff = false;
+            try {
+                // Quem conecta e não manda nada não segura o worker para sempre
+                clientSocket.setSoTimeout(config.getReadTimeoutMillis());
+                // O handshake TLS manda vários registros pequenos seguidos; com Nagle, cada um
+                // esperaria o ACK atrasado do terminal (~40 ms por conexão)
+                clientSocket.setTcpNoDelay(true);
+                ClientConnection connection = ClientConnection.open(clientSocket, elections::get);
                 try {
-                    processVote(vote);
-                    out.writeObject("SUCCESS: Your vote has been registered.");
-                } catch (Exception e) {
-                    out.writeObject("ERROR: " + e.getMessage());
+                    handedOff = serve(connection);
+                } finally {
+                    if (!handedOff) connection.close();
                 }
-                out.flush();
-            } catch (IOException | ClassNotFoundException e) {
+            } catch (SocketTimeoutException e) {
+                // Sessão calada além do idleTimeoutMillis é fim normal, não descarte
+                if (idle) {
+                    metrics.sessionExpired();
+                } else {
+                    metrics.connectionShed(ServerMetrics.ShedReason.READ_TIMEOUT);
+                }
+            } catch (IOException e) {
                 System.err.println("Error handling client: " + e.getMessage());
             } finally {
-                try {
-                    clientSocket.close();
-                } catch (IOException e) { e.printStackTrace(); }
+                if (!handedOff) {
+                    try {
+                        clientSocket.close();
+                    } catch (IOException e) { e.printStackTrace(); }
+                }
+                metrics.connectionClosed();
+                if (holdsSession) sessionPermits.release();
+                connectionPermits.release();
+            }
+        }
+
+        /**
+         * Atende a conexão até o fim; devolve true se ela virou a de um observador.
+         */
+        private boolean serve(ClientConnection connection) throws IOException {
+            Election election = connection.getElection();
+            if (election == null) {
+                // A resposta vai no lugar dos dados da eleição, como no "server busy"
+                connection.sendResult(new VoteResult(VoteStatus.UNKNOWN_ELECTION));
+                return false;
+            }
+
+            // 1. Envia dados da eleição
+            connection.sendElectionData(election.getData());
+
+            // 2. Recebe e processa os votos; em sessão, vários na mesma conexão
+            VoteRequest request;
+            while ((request = connection.readVoteRequest()) != null) {
+                if (!idle) {
+                    clientSocket.setSoTimeout(config.getIdleTimeoutMillis());
+                    idle = true;
+                }
+                if (request.isPing()) {
+                    // Só renova o prazo de leitura; a conexão persistente ocupa uma vaga de sessão como as outras
+                    if (!admitSession(connection, request)) return false;
+                    continue;
+                }
+                if ((request.isForwarded() || request.isTallyQuery()) && !fromPeer()) {
+                    // Sem isso, um terminal mandaria votos "já roteados" a um nó que não é dono dos CPFs
+                    System.err.println("Cluster message from " + clientSocket.getInetAddress().getHostAddress()
+                            + " refused: not a cluster node");
+                    return false;
+                }
+                if (request.isSession() && !admitSession(connection, request)) return false;
+                if (request.isSubscription()) {
+                    // O observador deixa de ocupar um worker e uma vaga de conexão
+                    if (election.getObservers().subscribe(clientSocket)) return true;
+                    connection.sendResult(new VoteResult(VoteStatus.SERVER_BUSY));
+                    return false;
+                }
+                if (request.isTallyQuery()) {
+                    binary(connection).sendTally(new TallyResult(request.getRequestId(), election.getLedger().counts()));
+                    continue;
+                }
+                if (request.isBatch()) {
+                    binary(connection).sendBatchResult(processBatch(election, request));
+                    continue;
+                }
+                VoteResult result = processVote(election, request.getVote());
+                connection.sendResult(result.forRequest(request.getRequestId()));
+                if (!request.isSession()) break;
+            }
+            return false;
+        }
+
+        private boolean fromPeer() {
+            return cluster != null && cluster.isPeer(clientSocket.getInetAddress());
+        }
+
+        /**
+         * Lotes e consultas de contagem só chegam pelo protocolo binário: o {@link LegacyConnection}
+         * lê apenas votos avulsos.
+         */
+        private BinaryConnection binary(ClientConnection connection) {
+            return (BinaryConnection) connection;
+        }
+
+        /**
+         * No modo POOLED, uma sessão prende o worker até o terminal encerrar. Sem vaga de
+         * sessão, o pedido recebe "server busy" na hora e a conexão é fechada, em vez de os
+         * terminais seguintes esperarem na fila sem resposta até alguma sessão acabar.
+         */
+        private boolean admitSession(ClientConnection connection, VoteRequest request) throws IOException {
+            if (holdsSession || sessionPermits == null) return true;
+            if (sessionPermits.tryAcquire()) {
+                holdsSession = true;
+                return true;
+            }
+            metrics.connectionShed(ServerMetrics.ShedReason.CAPACITY);
+            if (request.isBatch()) {
+                VoteStatus[] busy = new VoteStatus[request.getVotes().size()];
+                Arrays.fill(busy, VoteStatus.SERVER_BUSY);
+                binary(connection).sendBatchResult(new BatchResult(request.getRequestId(), busy));
+            } else if (request.isPing()) {
+                // Ping de abertura de um terminal: a recusa sem id chega no lugar da primeira resposta
+                connection.sendResult(new VoteResult(VoteStatus.SERVER_BUSY));
+            } else if (!request.isTallyQuery()) {
+                connection.sendResult(new VoteResult(VoteStatus.SERVER_BUSY).forRequest(request.getRequestId()));
             }
+            return false;
         }
     }
 }
\ No newline at end of file
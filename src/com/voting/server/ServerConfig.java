@@ -0,0 +1,536 @@
+package com.voting.server;
+
+import com.voting.common.ElectionData;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuração do servidor de votação.
+ * Define a porta e como as conexões dos clientes são executadas.
+ * Pode vir de um arquivo .properties ({@link #load}), com as chaves iguais aos nomes dos campos.
+ */
+public class ServerConfig {
+
+    /**
+     * Modo de execução dos handlers de conexão.
+     * VIRTUAL usa virtual threads (Java 21+); POOLED usa um pool fixo de threads.
+     */
+    public enum ExecutionMode { VIRTUAL, POOLED }
+
+    /**
+     * Como o primário espera os standbys.
+     * ASYNC confirma o voto sem esperar; QUORUM espera {@code replicationQuorum} standbys.
+     */
+    public enum ReplicationMode { ASYNC, QUORUM }
+
+    private int port = 12345;
+    private ExecutionMode executionMode = ExecutionMode.POOLED;
+
+    // Threads do pool no modo POOLED; sessões ocupam no máximo uma a menos, e as que passarem disso recebem "server busy"
+    private int workerThreads = 64;
+
+    // Conexões que podem aguardar um worker livre antes de responder "server busy"
+    private int backlog = 256;
+
+    // Limite de conexões simultâneas no modo VIRTUAL
+    private int maxConnections = 10_000;
+
+    // Fila de conexões do SO até a thread do accept retirá-las. O padrão do ServerSocket é 50:
+    // numa rajada o SO descarta o SYN e o terminal só tenta de novo depois de 1 s
+    private int acceptBacklog = 1024;
+
+    // Quanto uma conexão nova tem para fazer o handshake e mandar o primeiro pedido
+    private int readTimeoutMillis = 10_000;
+
+    // Quanto uma sessão pode ficar calada entre um pedido e o próximo. Terminais e nós do cluster
+    // mandam ping a cada WireProtocol.PING_INTERVAL_MILLIS (20 s) parados; abaixo disso, derruba sessões vivas
+    private int idleTimeoutMillis = 60_000;
+
+    // Conexões novas por segundo de um mesmo IP (0 = sem limite) e a rajada tolerada acima disso
+    private int connectionsPerSecondPerIp = 0;
+    private int connectionBurstPerIp = 50;
+
+    // Keystore PKCS12 com o certificado do servidor; definido, a porta dos terminais passa a exigir TLS
+    private String tlsKeyStore;
+    private String tlsKeyStorePassword = "changeit";
+
+    // Certificados dos outros nós do cluster (mesma senha do keystore); null = o próprio keystore
+    private String tlsTrustStore;
+
+    // Por quanto tempo um terminal pode retomar a sessão TLS sem handshake completo
+    private int tlsSessionTimeoutSeconds = 3600;
+
+    // Sessões TLS 1.2 guardadas para retomada; no TLS 1.3 a sessão vai no ticket, com o terminal
+    private int tlsSessionCacheSize = 20_000;
+
+    // Quantas vezes por segundo os resultados são publicados na GUI
+    private int resultsPublishRate = 10;
+
+    // Journal dos votos aceitos; null desliga a persistência
+    private String journalFile = "votes.journal";
+
+    // Quanto um voto pode esperar para dividir o mesmo fsync com outros (group commit)
+    private long journalCommitLatencyMillis = 2;
+
+    // Intervalo entre snapshots da apuração (0 desliga); permite apagar o journal antigo
+    private long snapshotIntervalSeconds = 300;
+
+    // Nós do cluster ("host:porta"), na ordem das partições; vazio = servidor único
+    private List<String> clusterNodes = Collections.emptyList();
+
+    // Posição deste servidor em clusterNodes; o nó 0 é o coordenador da apuração
+    private int clusterNodeIndex = 0;
+
+    // Porta em que o primário aceita standbys (0 = sem replicação)
+    private int replicationPort = 0;
+
+    // "host:porta" de replicação do primário; quando definido, este servidor é um standby
+    private String replicaOf;
+
+    private ReplicationMode replicationMode = ReplicationMode.ASYNC;
+
+    // Standbys que precisam confirmar cada voto no modo QUORUM
+    private int replicationQuorum = 1;
+
+    // Sem quórum neste prazo, a replicação passa a assíncrona até um standby alcançar o primário
+    private long replicationAckTimeoutMillis = 1000;
+
+    // Silêncio do primário depois do qual o standby se promove. Sem fencing: numa partição de rede
+    // o primário antigo segue aceitando votos (ver ReplicationStandby)
+    private long failoverTimeoutMillis = 3000;
+
+    // Porta do endpoint HTTP de métricas, só no loopback (0 = desligado; o JMX fica sempre ativo)
+    private int metricsPort = 0;
+
+    // Observadores inscritos na apuração ao vivo; acima disso a inscrição é recusada com "server busy"
+    private int maxObservers = 10_000;
+
+    // Linhas de log de voto por segundo no console; acima disso, uma linha de resumo por segundo
+    private int voteLogPerSecond = 10;
+
+    // Porta no loopback em que GUIs de outro processo acompanham a apuração (0 = desligado)
+    private int monitorPort = 0;
+
+    // Onde o relatório final é gravado ao encerrar a votação
+    private String reportDirectory = ".";
+
+    // Votos ordenados em memória por vez ao gerar o relatório; o resto fica em arquivos temporários
+    private int reportRunSize = ReportExporter.DEFAULT_RUN_SIZE;
+
+    // Cédula da eleição padrão, a que os terminais antigos e o cluster usam
+    private String defaultQuestion = "Qual a melhor linguagem de programacao?";
+    private List<String> defaultOptions = Arrays.asList("Java", "Python", "JavaScript", "C++");
+
+    // Eleições extras criadas na partida (id -> pergunta e opções); outras podem ser criadas com o servidor no ar
+    private final Map<String, ElectionData> elections = new LinkedHashMap<>();
+
+    /**
+     * Lê a configuração de um arquivo .properties. Chaves ausentes ficam com o padrão.
+     * Exemplo:
+     * <pre>
+     * port=12345
+     * executionMode=POOLED
+     * backlog=256
+     * ballot.question=Qual a melhor linguagem de programacao?
+     * ballot.options=Java,Python,JavaScript,C++
+     * election.conselho.question=Quem preside o conselho?
+     * election.conselho.options=Ana,Bruno
+     * </pre>
+     *
+     * @throws IllegalArgumentException com a chave, se uma chave é desconhecida ou um valor é inválido
+     */
+    public static ServerConfig load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return fromProperties(properties);
+    }
+
+    public static ServerConfig fromProperties(Properties properties) {
+        ServerConfig config = new ServerConfig();
+        Map<String, String> electionQuestions = new LinkedHashMap<>();
+        Map<String, List<String>> electionOptions = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            try {
+                if (key.startsWith("election.")) {
+                    String[] parts = key.split("\\.");
+                    if (parts.length != 3) throw new IllegalArgumentException("expected election.<id>.question or .options");
+                    if (parts[2].equals("question")) electionQuestions.put(parts[1], value);
+                    else if (parts[2].equals("options")) electionOptions.put(parts[1], splitList(value));
+                    else throw new IllegalArgumentException("expected election.<id>.question or .options");
+                    continue;
+                }
+                config.set(key, value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid configuration " + key + "=" + value + ": " + e.getMessage(), e);
+            }
+        }
+        for (Map.Entry<String, List<String>> election : electionOptions.entrySet()) {
+            String question = electionQuestions.get(election.getKey());
+            if (question == null) {
+                throw new IllegalArgumentException("Missing election." + election.getKey() + ".question");
+            }
+            config.addElection(election.getKey(), question, election.getValue());
+        }
+        return config;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "port": port = Integer.parseInt(value); break;
+            case "executionMode": executionMode = ExecutionMode.valueOf(value.toUpperCase()); break;
+            case "workerThreads": workerThreads = Integer.parseInt(value); break;
+            case "backlog": backlog = Integer.parseInt(value); break;
+            case "maxConnections": maxConnections = Integer.parseInt(value); break;
+            case "acceptBacklog": acceptBacklog = Integer.parseInt(value); break;
+            case "readTimeoutMillis": readTimeoutMillis = Integer.parseInt(value); break;
+            case "idleTimeoutMillis": idleTimeoutMillis = Integer.parseInt(value); break;
+            case "connectionsPerSecondPerIp": connectionsPerSecondPerIp = Integer.parseInt(value); break;
+            case "connectionBurstPerIp": connectionBurstPerIp = Integer.parseInt(value); break;
+            case "tlsKeyStore": tlsKeyStore = value.isEmpty() ? null : value; break;
+            case "tlsKeyStorePassword": tlsKeyStorePassword = value; break;
+            case "tlsTrustStore": tlsTrustStore = value.isEmpty() ? null : value; break;
+            case "tlsSessionTimeoutSeconds": tlsSessionTimeoutSeconds = Integer.parseInt(value); break;
+            case "tlsSessionCacheSize": tlsSessionCacheSize = Integer.parseInt(value); break;
+            case "resultsPublishRate": resultsPublishRate = Integer.parseInt(value); break;
+            // Vazio ou "none" desliga a persistência
+            case "journalFile": journalFile = value.isEmpty() || value.equals("none") ? null : value; break;
+            case "journalCommitLatencyMillis": journalCommitLatencyMillis = Long.parseLong(value); break;
+            case "snapshotIntervalSeconds": snapshotIntervalSeconds = Long.parseLong(value); break;
+            case "clusterNodes": clusterNodes = splitList(value); break;
+            case "clusterNodeIndex": clusterNodeIndex = Integer.parseInt(value); break;
+            case "replicationPort": replicationPort = Integer.parseInt(value); break;
+            case "replicaOf": replicaOf = value.isEmpty() ? null : value; break;
+            case "replicationMode": replicationMode = ReplicationMode.valueOf(value.toUpperCase()); break;
+            case "replicationQuorum": replicationQuorum = Integer.parseInt(value); break;
+            case "replicationAckTimeoutMillis": replicationAckTimeoutMillis = Long.parseLong(value); break;
+            case "failoverTimeoutMillis": failoverTimeoutMillis = Long.parseLong(value); break;
+            case "metricsPort": metricsPort = Integer.parseInt(value); break;
+            case "monitorPort": monitorPort = Integer.parseInt(value); break;
+            case "maxObservers": maxObservers = Integer.parseInt(value); break;
+            case "voteLogPerSecond": voteLogPerSecond = Integer.parseInt(value); break;
+            case "reportDirectory": reportDirectory = value; break;
+            case "reportRunSize": reportRunSize = Integer.parseInt(value); break;
+            case "ballot.question": defaultQuestion = value; break;
+            case "ballot.options": defaultOptions = splitList(value); break;
+            default: throw new IllegalArgumentException("unknown key");
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) items.add(item.trim());
+        }
+        return items;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public int getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(int idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public int getConnectionsPerSecondPerIp() {
+        return connectionsPerSecondPerIp;
+    }
+
+    public void setConnectionsPerSecondPerIp(int connectionsPerSecondPerIp) {
+        this.connectionsPerSecondPerIp = connectionsPerSecondPerIp;
+    }
+
+    public int getConnectionBurstPerIp() {
+        return connectionBurstPerIp;
+    }
+
+    public void setConnectionBurstPerIp(int connectionBurstPerIp) {
+        this.connectionBurstPerIp = connectionBurstPerIp;
+    }
+
+    public boolean isTlsEnabled() {
+        return tlsKeyStore != null;
+    }
+
+    public String getTlsKeyStore() {
+        return tlsKeyStore;
+    }
+
+    public void setTlsKeyStore(String tlsKeyStore) {
+        this.tlsKeyStore = tlsKeyStore;
+    }
+
+    public String getTlsKeyStorePassword() {
+        return tlsKeyStorePassword;
+    }
+
+    public void setTlsKeyStorePassword(String tlsKeyStorePassword) {
+        this.tlsKeyStorePassword = tlsKeyStorePassword;
+    }
+
+    public String getTlsTrustStore() {
+        return tlsTrustStore != null ? tlsTrustStore : tlsKeyStore;
+    }
+
+    public void setTlsTrustStore(String tlsTrustStore) {
+        this.tlsTrustStore = tlsTrustStore;
+    }
+
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    public void setTlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public int getResultsPublishRate() {
+        return resultsPublishRate;
+    }
+
+    public void setResultsPublishRate(int resultsPublishRate) {
+        this.resultsPublishRate = resultsPublishRate;
+    }
+
+    public String getJournalFile() {
+        return journalFile;
+    }
+
+    public void setJournalFile(String journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    public long getJournalCommitLatencyMillis() {
+        return journalCommitLatencyMillis;
+    }
+
+    public void setJournalCommitLatencyMillis(long journalCommitLatencyMillis) {
+        this.journalCommitLatencyMillis = journalCommitLatencyMillis;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public List<String> getClusterNodes() {
+        return clusterNodes;
+    }
+
+    public void setClusterNodes(List<String> clusterNodes) {
+        this.clusterNodes = clusterNodes;
+    }
+
+    public int getClusterNodeIndex() {
+        return clusterNodeIndex;
+    }
+
+    public void setClusterNodeIndex(int clusterNodeIndex) {
+        this.clusterNodeIndex = clusterNodeIndex;
+    }
+
+    public boolean isClustered() {
+        return clusterNodes.size() > 1;
+    }
+
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    public void setReplicationPort(int replicationPort) {
+        this.replicationPort = replicationPort;
+    }
+
+    public String getReplicaOf() {
+        return replicaOf;
+    }
+
+    public void setReplicaOf(String replicaOf) {
+        this.replicaOf = replicaOf;
+    }
+
+    public ReplicationMode getReplicationMode() {
+        return replicationMode;
+    }
+
+    public void setReplicationMode(ReplicationMode replicationMode) {
+        this.replicationMode = replicationMode;
+    }
+
+    public int getReplicationQuorum() {
+        return replicationQuorum;
+    }
+
+    public void setReplicationQuorum(int replicationQuorum) {
+        this.replicationQuorum = replicationQuorum;
+    }
+
+    public long getReplicationAckTimeoutMillis() {
+        return replicationAckTimeoutMillis;
+    }
+
+    public void setReplicationAckTimeoutMillis(long replicationAckTimeoutMillis) {
+        this.replicationAckTimeoutMillis = replicationAckTimeoutMillis;
+    }
+
+    public long getFailoverTimeoutMillis() {
+        return failoverTimeoutMillis;
+    }
+
+    public void setFailoverTimeoutMillis(long failoverTimeoutMillis) {
+        this.failoverTimeoutMillis = failoverTimeoutMillis;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public int getVoteLogPerSecond() {
+        return voteLogPerSecond;
+    }
+
+    public void setVoteLogPerSecond(int voteLogPerSecond) {
+        this.voteLogPerSecond = voteLogPerSecond;
+    }
+
+    public int getMaxObservers() {
+        return maxObservers;
+    }
+
+    public void setMaxObservers(int maxObservers) {
+        this.maxObservers = maxObservers;
+    }
+
+    public String getDefaultQuestion() {
+        return defaultQuestion;
+    }
+
+    public void setDefaultQuestion(String defaultQuestion) {
+        this.defaultQuestion = defaultQuestion;
+    }
+
+    public List<String> getDefaultOptions() {
+        return defaultOptions;
+    }
+
+    public void setDefaultOptions(List<String> defaultOptions) {
+        this.defaultOptions = defaultOptions;
+    }
+
+    public Map<String, ElectionData> getElections() {
+        return Collections.unmodifiableMap(elections);
+    }
+
+    public void addElection(String id, String question, List<String> options) {
+        elections.put(id, new ElectionData(question, options));
+    }
+
+    public String getReportDirectory() {
+        return reportDirectory;
+    }
+
+    public void setReportDirectory(String reportDirectory) {
+        this.reportDirectory = reportDirectory;
+    }
+
+    public int getReportRunSize() {
+        return reportRunSize;
+    }
+
+    public void setReportRunSize(int reportRunSize) {
+        this.reportRunSize = reportRunSize;
+    }
+
+    public int getMonitorPort() {
+        return monitorPort;
+    }
+
+    public void setMonitorPort(int monitorPort) {
+        this.monitorPort = monitorPort;
+    }
+}
@@ -1,23 +1,70 @@
 package com.voting.server;
 
+import com.voting.common.Cpf;
+import com.voting.common.WireProtocol;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * A interface gráfica para o servidor.
  * Exibe resultados, auditoria com DATA/HORA e botão de encerramento corrigido.
+ * Pode rodar o servidor na mesma JVM ou só acompanhar um servidor headless
+ * ({@link HeadlessServer}) pelo monitor no loopback, com {@code --attach porta}.
  */
-public class ServerGUI extends JFrame {
+public class ServerGUI extends JFrame implements ResultsListener {
+    // Linhas de auditoria mantidas na tela; a trilha completa vai para o relatório exportado
+    private static final int MAX_LOG_LINES = 10_000;
+
+    private final ServerConfig config;
     private JTextArea resultsArea;
     private JTextArea logArea;
     private Server server;
     private JButton endButton;
+    private JMenuItem newElectionItem;
+
+    // Só no modo --attach: conexão com o monitor do servidor headless
+    private MonitorClient monitor;
+
+    // Verdadeiro depois que o servidor parou; uma nova tentativa só refaz o relatório
+    private boolean votacaoEncerrada;
+
+    // Contagem já formatada de cada eleição, na ordem da primeira publicação (a padrão publica antes);
+    // só tocada na thread do Swing
+    private final Map<String, String> resultsByElection = new LinkedHashMap<>();
 
     public ServerGUI() {
-        setTitle("Election Server Status - v1.40 (Audited)");
+        this(new ServerConfig());
+    }
+
+    public ServerGUI(ServerConfig config) {
+        this(config, 0);
+    }
+
+    /**
+     * Só acompanha o servidor headless desta máquina que abriu o monitor em {@code monitorPort};
+     * a votação continua se esta janela for fechada. Não encerra a votação nem cria eleições.
+     */
+    public static ServerGUI attach(int monitorPort) {
+        return new ServerGUI(null, monitorPort);
+    }
+
+    private ServerGUI(ServerConfig config, int monitorPort) {
+        this.config = config;
+        boolean attached = config == null;
+        setTitle("Election Server Status - v1.40 (Audited)"
+                + (attached ? " - Monitor localhost:" + monitorPort
+                        : config.isClustered() ? " - Node " + config.getClusterNodeIndex() : ""));
         setSize(650, 550); // Um pouco mais largo para caber a data
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         
@@ -59,13 +106,27 @@ public class ServerGUI extends JFrame {
         
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         bottomPanel.add(endButton);
-        mainPanel.add(bottomPanel, BorderLayout.SOUTH);
+        // Quem encerra a votação é o operador do servidor headless
+        if (!attached) mainPanel.add(bottomPanel, BorderLayout.SOUTH);
         
         add(mainPanel);
-        createMenuBar();
+        createMenuBar(!attached);
 
-        server = new Server(this);
-        new Thread(server).start();
+        if (attached) {
+            try {
+                monitor = new MonitorClient(monitorPort, this, () -> SwingUtilities.invokeLater(() -> {
+                    setTitle(getTitle() + " (desconectado)");
+                    JOptionPane.showMessageDialog(this, "O servidor encerrou a conexão do monitor.",
+                            "Monitor", JOptionPane.WARNING_MESSAGE);
+                }));
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Falha ao conectar ao monitor: " + e.getMessage(),
+                        "Erro", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+            }
+        } else {
+            startServer();
+        }
 
         addWindowListener(new WindowAdapter() {
             @Override
@@ -78,8 +139,16 @@ public class ServerGUI extends JFrame {
         setVisible(true);
     }
 
-    private void createMenuBar() {
+    private void createMenuBar(boolean ownsServer) {
         JMenuBar menuBar = new JMenuBar();
+        if (ownsServer) {
+            JMenu electionsMenu = new JMenu("Eleições");
+            newElectionItem = new JMenuItem("Nova eleição...");
+            newElectionItem.addActionListener(e -> novaEleicao(newElectionItem));
+            electionsMenu.add(newElectionItem);
+            menuBar.add(electionsMenu);
+        }
+
         JMenu helpMenu = new JMenu("Ajuda");
         
         JMenuItem aboutItem = new JMenuItem("Sobre");
@@ -101,75 +170,282 @@ public class ServerGUI extends JFrame {
         setJMenuBar(menuBar);
     }
 
-    // ATUALIZADO: Recebe Map<String, String> votedData
-    public void updateResults(String question, Map<String, Integer> voteCounts, int totalVotes, Map<String, String> votedData) {
+    /**
+     * Abre o servidor fora da EDT: carregar o snapshot, reler o journal e abrir a trilha de
+     * auditoria pode levar segundos. Encerrar a votação e criar eleições ficam desabilitados
+     * até o servidor subir.
+     */
+    private void startServer() {
+        endButton.setEnabled(false);
+        newElectionItem.setEnabled(false);
+        resultsArea.setText("Recuperando votos gravados...");
+        new SwingWorker<Server, Void>() {
+            @Override
+            protected Server doInBackground() throws IOException {
+                return new Server(ServerGUI.this, config);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    server = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    // Sem o journal não há como garantir que os votos sobrevivam a uma queda
+                    JOptionPane.showMessageDialog(ServerGUI.this, "Falha ao abrir o journal de votos: " + cause.getMessage(),
+                            "Erro", JOptionPane.ERROR_MESSAGE);
+                    System.exit(1);
+                    return;
+                }
+                new Thread(server).start();
+                endButton.setEnabled(true);
+                newElectionItem.setEnabled(true);
+            }
+        }.execute();
+    }
+
+    /**
+     * Pede id, pergunta e opções e cria a eleição no servidor em execução. A criação
+     * grava a cédula e abre o journal da eleição, então roda fora da EDT; o item do
+     * menu fica desabilitado até terminar.
+     */
+    private void novaEleicao(JMenuItem menuItem) {
+        JTextField idField = new JTextField();
+        JTextField questionField = new JTextField();
+        JTextField optionsField = new JTextField();
+        Object[] fields = {
+                "Id (letras, dígitos, '_' ou '-'):", idField,
+                "Pergunta:", questionField,
+                "Opções (separadas por vírgula):", optionsField
+        };
+        int confirm = JOptionPane.showConfirmDialog(this, fields, "Nova Eleição", JOptionPane.OK_CANCEL_OPTION);
+        if (confirm != JOptionPane.OK_OPTION) return;
+
+        List<String> options = new ArrayList<>();
+        for (String option : optionsField.getText().split(",")) {
+            if (!option.isBlank()) options.add(option.trim());
+        }
+        String id = idField.getText().trim();
+        String question = questionField.getText().trim();
+        menuItem.setEnabled(false);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                server.createElection(id, question, options);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                menuItem.setEnabled(true);
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(ServerGUI.this, "Eleição não criada: " + cause.getMessage(),
+                            "Erro", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Recebe a fotografia publicada pelo servidor (no máximo algumas vezes por segundo por eleição).
+     * A contagem é pequena e é redesenhada; a auditoria só recebe as linhas novas.
+     */
+    @Override
+    public void resultsPublished(ResultsSnapshot snapshot) {
         SwingUtilities.invokeLater(() -> {
+            boolean isDefault = WireProtocol.DEFAULT_ELECTION.equals(snapshot.getElectionId());
             StringBuilder sbResults = new StringBuilder();
-            sbResults.append(question).append("\n");
+            if (!isDefault) sbResults.append("[").append(snapshot.getElectionId()).append("] ");
+            sbResults.append(snapshot.getQuestion()).append("\n");
             sbResults.append("----------------------------------\n");
-            for (Map.Entry<String, Integer> entry : voteCounts.entrySet()) {
+            for (Map.Entry<String, Long> entry : snapshot.getVoteCounts().entrySet()) {
                 sbResults.append(String.format("%-20s: %d votos\n", entry.getKey(), entry.getValue()));
             }
             sbResults.append("----------------------------------\n");
-            sbResults.append(String.format("Total de Votos: %d\n", totalVotes));
-            resultsArea.setText(sbResults.toString());
+            sbResults.append(String.format("Total de Votos: %d\n", snapshot.getTotalVotes()));
+            resultsByElection.put(snapshot.getElectionId(), sbResults.toString());
+            resultsArea.setText(String.join("\n", resultsByElection.values()));
 
+            if (snapshot.getNewAuditEntries().isEmpty()) return;
             StringBuilder sbLog = new StringBuilder();
-            // Itera sobre o Mapa para pegar CPF e DATA
-            for (Map.Entry<String, String> entry : votedData.entrySet()) {
-                String rawCpf = entry.getKey();
-                String time = entry.getValue();
-                
+            for (AuditEntry entry : snapshot.getNewAuditEntries()) {
                 // Formatação visual do CPF
-                String formattedCpf = rawCpf.length() == 11 
-                    ? rawCpf.substring(0,3) + "." + rawCpf.substring(3,6) + "." + rawCpf.substring(6,9) + "-" + rawCpf.substring(9,11)
-                    : rawCpf;
-                
-                sbLog.append("CPF: ").append(formattedCpf)
-                     .append("  |  Data: ").append(time)
+                if (!isDefault) sbLog.append("[").append(snapshot.getElectionId()).append("] ");
+                sbLog.append("CPF: ");
+                Cpf.appendMasked(sbLog, entry.getCpfNumber())
+                     .append("  |  Data: ").append(entry.getTimeStamp())
                      .append("\n");
             }
-            logArea.setText(sbLog.toString());
+            logArea.append(sbLog.toString());
+            trimLog();
         });
     }
 
+    /**
+     * Descarta as linhas mais antigas da auditoria na tela, para a área de texto não crescer sem limite.
+     */
+    private void trimLog() {
+        int excess = logArea.getLineCount() - 1 - MAX_LOG_LINES;
+        if (excess <= 0) return;
+        try {
+            logArea.replaceRange("", 0, logArea.getLineStartOffset(excess));
+        } catch (javax.swing.text.BadLocationException e) {
+            // Não acontece: o deslocamento vem da própria área de texto
+        }
+    }
+
     private void encerrarVotacao() {
-        int confirm = JOptionPane.showConfirmDialog(this, 
-                "Tem certeza que deseja encerrar a votação?", 
-                "Confirmar Encerramento", 
-                JOptionPane.YES_NO_OPTION, 
-                JOptionPane.WARNING_MESSAGE);
-
-        if (confirm == JOptionPane.YES_OPTION) {
-            server.stopServer();
-            String relatorio = "=== RELATÓRIO FINAL DA ELEIÇÃO ===\n\n" + 
-                               resultsArea.getText() + "\n" +
-                               "=== AUDITORIA DETALHADA ===\n" +
-                               logArea.getText();
-
-            JTextArea textArea = new JTextArea(relatorio);
-            textArea.setEditable(false);
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            scrollPane.setPreferredSize(new Dimension(500, 400));
-
-            JOptionPane.showMessageDialog(this, scrollPane, "Relatório Final", JOptionPane.INFORMATION_MESSAGE);
-            System.exit(0);
+        boolean stop = !votacaoEncerrada;
+        if (stop) {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Tem certeza que deseja encerrar a votação?",
+                    "Confirmar Encerramento",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE);
+            if (confirm != JOptionPane.YES_OPTION) return;
+            votacaoEncerrada = true;
         }
+        endButton.setEnabled(false);
+
+        // Parar o servidor (journals, réplicas, conexões) e gravar o relatório rodam em segundo
+        // plano; a janela só mostra o progresso
+        JProgressBar progressBar = new JProgressBar(0, 1000);
+        progressBar.setStringPainted(true);
+        JLabel progressLabel = new JLabel(stop ? "Encerrando a votação..." : "Preparando relatório...");
+        JPanel progressPanel = new JPanel(new BorderLayout(5, 5));
+        progressPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        progressPanel.add(progressLabel, BorderLayout.NORTH);
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        JDialog progressDialog = new JDialog(this, "Gerando Relatório", false);
+        progressDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        progressDialog.add(progressPanel);
+        progressDialog.setSize(400, 110);
+        progressDialog.setLocationRelativeTo(this);
+        progressDialog.setVisible(true);
+
+        Path directory = Paths.get(config.getReportDirectory());
+        new SwingWorker<List<Path>, Void>() {
+            @Override
+            protected List<Path> doInBackground() throws Exception {
+                if (stop) server.stopServer();
+                return server.exportReports(directory, (electionId, done, total) -> SwingUtilities.invokeLater(() -> {
+                    progressLabel.setText("Eleição " + electionId + ": " + done / 2 + " de " + total / 2 + " votos");
+                    progressBar.setValue(total == 0 ? 1000 : (int) (done * 1000 / total));
+                }));
+            }
+
+            @Override
+            protected void done() {
+                progressDialog.dispose();
+                try {
+                    List<Path> files = get();
+                    StringBuilder relatorio = new StringBuilder("=== RELATÓRIO FINAL DA ELEIÇÃO ===\n\n")
+                            .append(resultsArea.getText())
+                            .append("\n=== ARQUIVOS GERADOS ===\n");
+                    for (Path file : files) relatorio.append(file.toAbsolutePath()).append("\n");
+
+                    JTextArea textArea = new JTextArea(relatorio.toString());
+                    textArea.setEditable(false);
+                    JScrollPane scrollPane = new JScrollPane(textArea);
+                    scrollPane.setPreferredSize(new Dimension(500, 400));
+                    JOptionPane.showMessageDialog(ServerGUI.this, scrollPane, "Relatório Final", JOptionPane.INFORMATION_MESSAGE);
+                    System.exit(0);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    // A apuração continua em memória: o operador pode liberar espaço e tentar de novo
+                    JOptionPane.showMessageDialog(ServerGUI.this, "Falha ao gravar o relatório: " + cause.getMessage(),
+                            "Erro", JOptionPane.ERROR_MESSAGE);
+                    endButton.setText("Gerar Relatório Novamente");
+                    endButton.setEnabled(true);
+                }
+            }
+        }.execute();
     }
 
     private void confirmarSaida() {
+        if (monitor != null) {
+            // Fechar o monitor não afeta a votação
+            try {
+                monitor.close();
+            } catch (IOException e) { /* Ignore */ }
+            System.exit(0);
+        }
         int confirm = JOptionPane.showConfirmDialog(this, 
                 "Deseja sair sem encerrar formalmente?", 
                 "Sair", 
                 JOptionPane.YES_NO_OPTION);
         
-        if (confirm == JOptionPane.YES_OPTION) {
-            server.stopServer();
-            System.exit(0);
-        }
+        if (confirm != JOptionPane.YES_OPTION) return;
+        // Ainda recuperando os votos: sair equivale a uma queda, que o journal já cobre
+        if (votacaoEncerrada || server == null) System.exit(0);
+        setEnabled(false);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                server.stopServer();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                System.exit(0);
+            }
+        }.execute();
     }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(ServerGUI::new);
+    /**
+     * Sem argumentos: servidor único na porta padrão.
+     * Cluster: ServerGUI índiceDoNó host:porta,host:porta,... (a lista é a mesma em todos os nós).
+     * Replicação: --port N, --journal arquivo, --replication-port N, --standby-of host:porta,
+     * --quorum N (espera N standbys por voto; sem a opção a replicação é assíncrona).
+     * Métricas: --metrics-port N abre {@code http://localhost:N/metrics}.
+     * Monitor para outras GUIs desta máquina: --monitor-port N.
+     * Eleições extras: --election id "pergunta" op1,op2,... (pode repetir).
+     * Relatório final: --report-dir pasta (padrão: pasta atual).
+     * Configuração em arquivo: --config server.properties (vem antes das outras opções, que a sobrescrevem).
+     * Só acompanhar um servidor headless desta máquina: --attach portaDoMonitor.
+     */
+    public static void main(String[] args) throws IOException {
+        ServerConfig config = new ServerConfig();
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config": config = ServerConfig.load(Paths.get(args[++i])); break;
+                case "--attach":
+                    int monitorPort = Integer.parseInt(args[++i]);
+                    SwingUtilities.invokeLater(() -> attach(monitorPort));
+                    return;
+                case "--port": config.setPort(Integer.parseInt(args[++i])); break;
+                case "--journal": config.setJournalFile(args[++i]); break;
+                case "--replication-port": config.setReplicationPort(Integer.parseInt(args[++i])); break;
+                case "--standby-of": config.setReplicaOf(args[++i]); break;
+                case "--metrics-port": config.setMetricsPort(Integer.parseInt(args[++i])); break;
+                case "--report-dir": config.setReportDirectory(args[++i]); break;
+                case "--monitor-port": config.setMonitorPort(Integer.parseInt(args[++i])); break;
+                case "--election":
+                    config.addElection(args[i + 1], args[i + 2], Arrays.asList(args[i + 3].split(",")));
+                    i += 3;
+                    break;
+                case "--quorum":
+                    config.setReplicationMode(ServerConfig.ReplicationMode.QUORUM);
+                    config.setReplicationQuorum(Integer.parseInt(args[++i]));
+                    break;
+                default: positional.add(args[i]);
+            }
+        }
+        if (positional.size() >= 2) {
+            int nodeIndex = Integer.parseInt(positional.get(0));
+            List<String> nodes = Arrays.asList(positional.get(1).split(","));
+            config.setClusterNodes(nodes);
+            config.setClusterNodeIndex(nodeIndex);
+            config.setPort(Cluster.parseAddress(nodes.get(nodeIndex)).getPort());
+            // Vários nós na mesma máquina não podem dividir o journal
+            config.setJournalFile("votes-node" + nodeIndex + ".journal");
+        }
+        ServerConfig finalConfig = config;
+        SwingUtilities.invokeLater(() -> new ServerGUI(finalConfig));
     }
 }
\ No newline at end of file
@@ -0,0 +1,362 @@
+package com.voting.server;
+
+import com.voting.common.LatencyHistogram;
+import com.voting.common.VoteStatus;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Contadores do servidor: votos por status, conexões ativas, fila de handlers
+ * e latência do {@code processVote}. No caminho do voto só há incrementos sem lock;
+ * as taxas por segundo são calculadas por uma thread que acorda uma vez por segundo.
+ *
+ * Também limita o log de votos no console: até {@code voteLogPerSecond} linhas por
+ * segundo; o restante vira uma linha de resumo.
+ */
+class ServerMetrics implements ServerMetricsMXBean, Closeable {
+
+    /**
+     * Por que uma conexão foi descartada: limite de conexões, taxa do IP ou tempo esgotado
+     * antes do primeiro pedido. Sessões que expiram por ociosidade são contadas à parte
+     * ({@link #sessionExpired}): terminar a sessão calada é o fim normal, não sobrecarga.
+     */
+    enum ShedReason {
+        CAPACITY, RATE_LIMIT, READ_TIMEOUT;
+
+        final String label = name().toLowerCase();
+    }
+
+    private final LongAdder[] votesByStatus = new LongAdder[VoteStatus.values().length];
+    private final LongAdder[] shedByReason = new LongAdder[ShedReason.values().length];
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LatencyHistogram voteLatency = new LatencyHistogram();
+    private volatile IntSupplier queueDepth = () -> 0;
+    private final Collection<Election> elections;
+
+    // Escritos só pela thread do tick
+    private long lastAccepted;
+    private long lastRejected;
+    private long lastShed;
+    private volatile long acceptedPerSecond;
+    private volatile long rejectedPerSecond;
+
+    private final int voteLogPerSecond;
+    private final AtomicInteger votesLoggedThisSecond = new AtomicInteger();
+    private final LongAdder votesNotLogged = new LongAdder();
+    private final LongAdder votesReplayed = new LongAdder();
+    private final LongAdder sessionsExpired = new LongAdder();
+
+    private ScheduledExecutorService ticker;
+    private ObjectName objectName;
+
+    /**
+     * @param elections visão viva das eleições do servidor; os observadores são somados entre elas
+     */
+    ServerMetrics(int voteLogPerSecond, Collection<Election> elections) {
+        this.voteLogPerSecond = voteLogPerSecond;
+        this.elections = elections;
+        for (int i = 0; i < votesByStatus.length; i++) {
+            votesByStatus[i] = new LongAdder();
+        }
+        for (int i = 0; i < shedByReason.length; i++) {
+            shedByReason[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra o MXBean e começa a calcular as taxas por segundo.
+     */
+    void start(int port) {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+
+        try {
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.voting:type=Server,port=" + port);
+            mbeans.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.err.println("Metrics not published over JMX: " + e.getMessage());
+        }
+    }
+
+    void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    void recordVote(VoteStatus status, long latencyNanos) {
+        votesByStatus[status.ordinal()].increment();
+        voteLatency.record(latencyNanos);
+    }
+
+    /**
+     * Lotes: só a contagem por status; a latência do lote não é a de um voto.
+     */
+    void recordBatch(VoteStatus[] statuses) {
+        for (VoteStatus status : statuses) {
+            votesByStatus[status.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Um voto reenviado com a mesma chave recebeu o resultado original.
+     */
+    void voteReplayed(int count) {
+        votesReplayed.add(count);
+    }
+
+    void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    void connectionShed(ShedReason reason) {
+        shedByReason[reason.ordinal()].increment();
+    }
+
+    /**
+     * Uma sessão ficou mais que {@code idleTimeoutMillis} sem pedido nem ping e foi encerrada.
+     */
+    void sessionExpired() {
+        sessionsExpired.increment();
+    }
+
+    long getShed(ShedReason reason) {
+        return shedByReason[reason.ordinal()].sum();
+    }
+
+    /**
+     * Verdadeiro enquanto não se esgotou a cota de linhas de log deste segundo.
+     */
+    boolean shouldLogVote() {
+        if (votesLoggedThisSecond.get() < voteLogPerSecond
+                && votesLoggedThisSecond.incrementAndGet() <= voteLogPerSecond) {
+            return true;
+        }
+        votesNotLogged.increment();
+        return false;
+    }
+
+    private void tick() {
+        long accepted = getAcceptedVotes();
+        long rejected = getRejectedVotes();
+        acceptedPerSecond = accepted - lastAccepted;
+        rejectedPerSecond = rejected - lastRejected;
+        lastAccepted = accepted;
+        lastRejected = rejected;
+
+        votesLoggedThisSecond.set(0);
+        long suppressed = votesNotLogged.sumThenReset();
+        if (suppressed > 0) {
+            System.out.println("... " + suppressed + " more votes not logged (" + acceptedPerSecond + " accepted/s, "
+                    + rejectedPerSecond + " rejected/s, " + activeConnections.get() + " connections)");
+        }
+
+        // Uma linha por segundo, no máximo, mesmo sob uma enxurrada de conexões
+        long shed = 0;
+        for (ShedReason reason : ShedReason.values()) shed += getShed(reason);
+        if (shed > lastShed) {
+            StringBuilder line = new StringBuilder("Shed ").append(shed - lastShed).append(" connections in the last second (total");
+            for (ShedReason reason : ShedReason.values()) line.append(' ').append(reason.label).append('=').append(getShed(reason));
+            System.out.println(line.append(')'));
+        }
+        lastShed = shed;
+    }
+
+    long getVotes(VoteStatus status) {
+        return votesByStatus[status.ordinal()].sum();
+    }
+
+    @Override
+    public long getAcceptedVotes() {
+        return getVotes(VoteStatus.SUCCESS);
+    }
+
+    @Override
+    public long getRejectedVotes() {
+        long rejected = 0;
+        for (VoteStatus status : VoteStatus.values()) {
+            if (status != VoteStatus.SUCCESS) rejected += getVotes(status);
+        }
+        return rejected;
+    }
+
+    @Override
+    public long getDuplicateRejections() {
+        return getVotes(VoteStatus.ALREADY_VOTED);
+    }
+
+    @Override
+    public long getReplayedVotes() {
+        return votesReplayed.sum();
+    }
+
+    @Override
+    public long getAcceptedVotesPerSecond() {
+        return acceptedPerSecond;
+    }
+
+    @Override
+    public long getRejectedVotesPerSecond() {
+        return rejectedPerSecond;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getObservers() {
+        int count = 0;
+        for (Election election : elections) count += election.getObservers().getObserverCount();
+        return count;
+    }
+
+    @Override
+    public long getObserverResyncs() {
+        long resyncs = 0;
+        for (Election election : elections) resyncs += election.getObservers().getResyncs();
+        return resyncs;
+    }
+
+    @Override
+    public long getObserverDrops() {
+        long drops = 0;
+        for (Election election : elections) drops += election.getObservers().getDrops();
+        return drops;
+    }
+
+    @Override
+    public long getConnectionsShedCapacity() {
+        return getShed(ShedReason.CAPACITY);
+    }
+
+    @Override
+    public long getConnectionsShedRateLimit() {
+        return getShed(ShedReason.RATE_LIMIT);
+    }
+
+    @Override
+    public long getConnectionsShedReadTimeout() {
+        return getShed(ShedReason.READ_TIMEOUT);
+    }
+
+    @Override
+    public long getSessionsExpired() {
+        return sessionsExpired.sum();
+    }
+
+    @Override
+    public long getAuditChainBacklog() {
+        long backlog = 0;
+        for (Election election : elections) {
+            AuditChain auditChain = election.getAuditChain();
+            if (auditChain != null) backlog += auditChain.getBacklog();
+        }
+        return backlog;
+    }
+
+    @Override
+    public long getVoteLatencyCount() {
+        return voteLatency.getCount();
+    }
+
+    @Override
+    public long getVoteLatencyP50Nanos() {
+        return voteLatency.getPercentileNanos(50);
+    }
+
+    @Override
+    public long getVoteLatencyP99Nanos() {
+        return voteLatency.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getVoteLatencyP999Nanos() {
+        return voteLatency.getPercentileNanos(99.9);
+    }
+
+    @Override
+    public long getVoteLatencyMaxNanos() {
+        return voteLatency.getMaxNanos();
+    }
+
+    /**
+     * Texto no formato de exposição do Prometheus, lido pelo endpoint HTTP.
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(1024);
+        out.append("# TYPE votes_total counter\n");
+        for (VoteStatus status : VoteStatus.values()) {
+            out.append("votes_total{status=\"").append(status.name()).append("\"} ").append(getVotes(status)).append('\n');
+        }
+        counter(out, "votes_replayed_total", getReplayedVotes());
+        gauge(out, "votes_accepted_per_second", acceptedPerSecond);
+        gauge(out, "votes_rejected_per_second", rejectedPerSecond);
+        gauge(out, "connections_active", getActiveConnections());
+        gauge(out, "handler_queue_depth", getQueueDepth());
+        out.append("# TYPE connections_shed_total counter\n");
+        for (ShedReason reason : ShedReason.values()) {
+            out.append("connections_shed_total{reason=\"").append(reason.label).append("\"} ").append(getShed(reason)).append('\n');
+        }
+        counter(out, "sessions_expired_total", getSessionsExpired());
+        gauge(out, "observers_connected", getObservers());
+        counter(out, "observer_resyncs_total", getObserverResyncs());
+        counter(out, "observer_drops_total", getObserverDrops());
+        gauge(out, "audit_chain_backlog", getAuditChainBacklog());
+
+        out.append("# TYPE vote_latency_seconds summary\n");
+        quantile(out, "0.5", getVoteLatencyP50Nanos());
+        quantile(out, "0.99", getVoteLatencyP99Nanos());
+        quantile(out, "0.999", getVoteLatencyP999Nanos());
+        quantile(out, "1", getVoteLatencyMaxNanos());
+        out.append("vote_latency_seconds_count ").append(getVoteLatencyCount()).append('\n');
+        out.append("vote_latency_seconds_sum ").append(voteLatency.getMeanNanos() * voteLatency.getCount() / 1e9).append('\n');
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" gauge\n").append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n").append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void quantile(StringBuilder out, String quantile, long nanos) {
+        out.append("vote_latency_seconds{quantile=\"").append(quantile).append("\"} ").append(nanos / 1e9).append('\n');
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) ticker.shutdownNow();
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) { /* Ignore */ }
+    }
+}
@@ -0,0 +1,58 @@
+package com.voting.server;
+
+/**
+ * Métricas do servidor publicadas via JMX ({@code com.voting:type=Server,port=<porta>}),
+ * para acompanhar a votação pelo JConsole/VisualVM sem parar o servidor.
+ * Latências em nanossegundos, acumuladas desde o início do servidor.
+ */
+public interface ServerMetricsMXBean {
+
+    long getAcceptedVotes();
+
+    long getRejectedVotes();
+
+    long getDuplicateRejections();
+
+    // Reenvios reconhecidos pela chave de idempotência; também entram em getAcceptedVotes, que conta respostas
+    long getReplayedVotes();
+
+    // Taxas medidas no último segundo completo
+    long getAcceptedVotesPerSecond();
+
+    long getRejectedVotesPerSecond();
+
+    int getActiveConnections();
+
+    // Conexões aceitas aguardando um worker livre (0 no modo VIRTUAL)
+    int getQueueDepth();
+
+    // Conexões descartadas, por motivo: limite de conexões, taxa por IP, sem pedido a tempo
+    long getConnectionsShedCapacity();
+
+    long getConnectionsShedRateLimit();
+
+    long getConnectionsShedReadTimeout();
+
+    // Sessões encerradas por ficarem caladas além do idleTimeoutMillis (sem voto nem ping)
+    long getSessionsExpired();
+
+    // Observadores da apuração ao vivo; resyncs e quedas contam os que não acompanharam o ritmo
+    int getObservers();
+
+    long getObserverResyncs();
+
+    long getObserverDrops();
+
+    // Votos aceitos ainda não encadeados na trilha de auditoria (deve ficar perto de zero)
+    long getAuditChainBacklog();
+
+    long getVoteLatencyCount();
+
+    long getVoteLatencyP50Nanos();
+
+    long getVoteLatencyP99Nanos();
+
+    long getVoteLatencyP999Nanos();
+
+    long getVoteLatencyMaxNanos();
+}
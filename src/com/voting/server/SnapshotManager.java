@@ -0,0 +1,214 @@
+package com.voting.server;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshots periódicos da apuração, para o reinício não precisar reler o journal inteiro.
+ *
+ * O snapshot é gravado em segundo plano, sem pausar os votos: primeiro o journal troca
+ * de segmento, então todo voto dos segmentos anteriores já está no VoteLedger; depois os
+ * votos do ledger são copiados. Votos que entrarem durante a cópia podem aparecer no
+ * snapshot e também no próximo segmento; o replay descarta o CPF repetido.
+ *
+ * Só são copiados votos já gravados no journal ({@link VoteLedger#forEachDurableVote}).
+ * Um voto reservado e ainda sem fsync pode ser desfeito se a gravação falhar; no snapshot,
+ * ele voltaria no reinício para um eleitor que recebeu "ERROR". Os votos que ficam de fora
+ * não estão nos segmentos anteriores à rotação, então o replay do segmento novo os encontra.
+ *
+ * Arquivo {@code votes.snapshot.<segmento>}: cabeçalho, votos (CPF, instante, opção),
+ * marcador de fim, chaves de idempotência (CPF, chave) com outro marcador de fim,
+ * contagem por opção e CRC32 de tudo. Snapshots da versão 1 não têm a seção de chaves.
+ */
+class SnapshotManager implements Closeable {
+    private static final int MAGIC = 0x564F5353; // "VOSS"
+    private static final int FORMAT_VERSION = 2;
+    private static final long END_OF_VOTES = -1;
+
+    // O snapshot anterior é mantido, junto com os segmentos que ele precisa, caso o último esteja corrompido
+    private static final int KEEP_SNAPSHOTS = 2;
+
+    private final Path basePath;
+    private final VoteLedger ledger;
+    private VoteJournal journal;
+    private ScheduledExecutorService scheduler;
+    private long recordsAtLastSnapshot;
+
+    SnapshotManager(Path basePath, VoteLedger ledger) {
+        this.basePath = basePath;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Carrega o snapshot válido mais recente no ledger e devolve o segmento do journal
+     * a partir do qual o replay deve continuar (0 se não houver snapshot).
+     */
+    long loadLatest() throws IOException {
+        List<Long> snapshots = listSnapshots();
+        Collections.reverse(snapshots);
+        for (long segment : snapshots) {
+            try {
+                load(snapshotPath(segment));
+                return segment;
+            } catch (IOException e) {
+                System.err.println("Ignoring snapshot " + snapshotPath(segment) + ": " + e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Passa a gravar um snapshot a cada {@code intervalSeconds}, se houve votos novos.
+     */
+    void start(VoteJournal journal, long intervalSeconds) {
+        this.journal = journal;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshot-writer");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotIfChanged, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void snapshotIfChanged() {
+        long records = journal.getRecordsWritten();
+        if (records == recordsAtLastSnapshot) return;
+        try {
+            takeSnapshot();
+            recordsAtLastSnapshot = records;
+        } catch (Exception e) {
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    void takeSnapshot() throws Exception {
+        long start = System.nanoTime();
+        long segment = journal.rotate().get();
+        long votes = write(segment);
+        removeOldSnapshots();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Snapshot of " + votes + " votes written in " + elapsedMillis + " ms (journal from segment " + segment + ")");
+    }
+
+    private long write(long segment) throws IOException {
+        Path target = snapshotPath(segment);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long[] counts = new long[ledger.snapshotCounts().size()];
+        long[] votes = new long[1];
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(segment);
+
+            // A contagem é recalculada a partir dos votos copiados, para ficar coerente com eles
+            ledger.forEachDurableVote((cpf, option, epochMillis) -> {
+                try {
+                    out.writeLong(cpf);
+                    out.writeLong(epochMillis);
+                    out.writeInt(option);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counts[option]++;
+                votes[0]++;
+            });
+            out.writeLong(END_OF_VOTES);
+            // Chaves de votos que entraram durante a cópia também podem vir; o restore ignora CPF sem voto
+            ledger.forEachIdempotencyKey((cpf, key) -> {
+                try {
+                    out.writeLong(cpf);
+                    out.writeLong(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeLong(END_OF_VOTES);
+            out.writeInt(counts.length);
+            for (long count : counts) out.writeLong(count);
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getChannel().force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return votes[0];
+    }
+
+    /**
+     * Confere o CRC do arquivo inteiro antes de tocar no ledger, depois reaplica os votos.
+     * São duas leituras sequenciais para não manter milhões de votos em memória duas vezes.
+     */
+    private void load(Path path) throws IOException {
+        read(path, (cpf, option, epochMillis) -> { }, (cpf, key) -> { });
+        read(path, ledger::restore, ledger::restoreIdempotencyKey);
+    }
+
+    private static void read(Path path, VoteJournal.RecordConsumer consumer, CpfVoteIndex.EntryConsumer keys)
+            throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            int version;
+            if (in.readInt() != MAGIC || (version = in.readInt()) < 1 || version > FORMAT_VERSION) {
+                throw new StreamCorruptedException("Not a vote snapshot.");
+            }
+            in.readLong();
+
+            long cpf;
+            while ((cpf = in.readLong()) != END_OF_VOTES) {
+                long epochMillis = in.readLong();
+                consumer.accept(cpf, in.readInt(), epochMillis);
+            }
+            if (version >= 2) {
+                while ((cpf = in.readLong()) != END_OF_VOTES) {
+                    keys.accept(cpf, in.readLong());
+                }
+            }
+            int optionCount = in.readInt();
+            for (int i = 0; i < optionCount; i++) in.readLong();
+            int expectedCrc = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expectedCrc) {
+                throw new StreamCorruptedException("Checksum mismatch.");
+            }
+        }
+    }
+
+    /**
+     * Mantém os últimos snapshots e apaga os segmentos do journal que nenhum deles precisa mais.
+     */
+    private void removeOldSnapshots() throws IOException {
+        List<Long> snapshots = listSnapshots();
+        int keepFrom = Math.max(0, snapshots.size() - KEEP_SNAPSHOTS);
+        for (int i = 0; i < keepFrom; i++) {
+            Files.deleteIfExists(snapshotPath(snapshots.get(i)));
+        }
+        journal.deleteSegmentsBefore(snapshots.get(keepFrom));
+    }
+
+    private Path snapshotPath(long segment) {
+        return VoteJournal.numberedPath(basePath, segment);
+    }
+
+    private List<Long> listSnapshots() throws IOException {
+        return VoteJournal.listNumbered(basePath);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+}
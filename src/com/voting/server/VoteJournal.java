@@ -0,0 +1,456 @@
+package com.voting.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal (write-ahead log) dos votos aceitos, em registros binários de tamanho fixo.
+ *
+ * Cada segmento começa com um cabeçalho de 8 bytes (MAGIC e versão) seguido de registros
+ * de 32 bytes: CPF (long), instante em epoch millis (long), opção (int), chave de
+ * idempotência (long) e CRC32 dos 28 bytes anteriores (int). Um registro com CRC errado
+ * marca o fim do que foi gravado por completo antes de uma queda.
+ *
+ * Segmentos da versão anterior não têm cabeçalho e usam registros de 24 bytes, sem a chave.
+ * Eles continuam sendo lidos; se o último for desse formato, os votos novos vão para um
+ * segmento novo, para um arquivo nunca misturar os dois formatos.
+ *
+ * Group commit: uma única thread grava os registros pendentes e faz um fsync
+ * para todo o grupo. O futuro de cada registro só completa depois do fsync,
+ * e o servidor só responde "SUCCESS" depois disso.
+ *
+ * Se a gravação ou o fsync de um grupo falha, o arquivo é truncado de volta ao tamanho
+ * de antes do grupo: os votos que receberam "ERROR" (e foram desfeitos no ledger) não
+ * reaparecem no replay, e o journal continua aceitando votos quando o disco voltar.
+ * Se nem o truncamento puder ser gravado, o journal para de aceitar votos até o servidor
+ * reiniciar (fail-stop), já que o arquivo pode guardar registros de votos recusados.
+ *
+ * O journal é dividido em segmentos numerados ({@code votes.journal.000001}, ...).
+ * Um snapshot registra o segmento a partir do qual o replay precisa continuar,
+ * e os segmentos anteriores podem ser apagados.
+ */
+class VoteJournal implements Closeable {
+    static final int RECORD_SIZE = 32;
+    static final int LEGACY_RECORD_SIZE = 24;
+
+    private static final int MAGIC = 0x564F4A4C; // "VOJL"
+    private static final int FORMAT_VERSION = 2;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    // Registros por fsync, no máximo
+    private static final int MAX_GROUP_RECORDS = 8192;
+
+    // A varredura de recuperação mapeia o arquivo em janelas de 2^24 registros
+    private static final long MAP_WINDOW_RECORDS = 1L << 24;
+
+    /**
+     * Recebe cada voto percorrido (snapshots, relatórios, cópia para os standbys).
+     */
+    interface RecordConsumer {
+        void accept(long cpf, int option, long epochMillis);
+    }
+
+    /**
+     * Recebe cada registro válido encontrado na recuperação; a chave é 0 nos segmentos antigos.
+     */
+    interface ReplayConsumer {
+        void accept(long cpf, int option, long epochMillis, long idempotencyKey);
+    }
+
+    private final Path basePath;
+    private final long commitLatencyNanos;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile long segment;
+    private volatile long recordsWritten;
+    // Escrito sob o lock do journal, junto com a entrada na fila (ver enqueue e close)
+    private volatile boolean running = true;
+    // Definido só quando um grupo que falhou não pôde ser descartado do arquivo (fail-stop)
+    private volatile IOException failure;
+    // Avisado, na thread do writer, de cada grupo de votos gravado antes de os futuros completarem
+    private volatile Consumer<List<AuditEntry>> durableListener = entries -> { };
+
+    private VoteJournal(Path basePath, long segment, long validLength, long commitLatencyMillis) throws IOException {
+        this.basePath = basePath;
+        if (validLength > 0 && !hasHeader(segmentPath(basePath, segment))) {
+            // Segmento da versão anterior: fica como está e os votos novos começam um segmento novo
+            segment++;
+            validLength = 0;
+        }
+        this.segment = segment;
+        this.channel = FileChannel.open(segmentPath(basePath, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            System.out.println("Journal: discarding " + (channel.size() - validLength) + " bytes of incomplete records.");
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        channel.position(validLength);
+        if (validLength == 0) writeHeader(channel);
+        this.commitLatencyNanos = TimeUnit.MILLISECONDS.toNanos(commitLatencyMillis);
+        this.writer = new Thread(this::writeLoop, "vote-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reaplica os segmentos a partir de {@code fromSegment} e abre o journal para novos votos,
+     * descartando o final incompleto do último segmento.
+     *
+     * @param commitLatencyMillis quanto um registro pode esperar para juntar mais registros no mesmo fsync
+     */
+    static VoteJournal open(Path basePath, long fromSegment, ReplayConsumer consumer, long commitLatencyMillis) throws IOException {
+        // Journal de arquivo único (versão anterior): vira o segmento 0
+        if (Files.isRegularFile(basePath) && !Files.exists(segmentPath(basePath, 0))) {
+            Files.move(basePath, segmentPath(basePath, 0));
+        }
+
+        long lastSegment = fromSegment;
+        long validLength = 0;
+        for (long s : listNumbered(basePath)) {
+            if (s < fromSegment) continue;
+            lastSegment = s;
+            validLength = replay(segmentPath(basePath, s), consumer);
+        }
+        return new VoteJournal(basePath, lastSegment, validLength, commitLatencyMillis);
+    }
+
+    /**
+     * Lê um segmento do início com um mapeamento sequencial em memória e entrega os
+     * registros válidos. Devolve o tamanho em bytes da parte válida (cabeçalho incluído).
+     */
+    static long replay(Path path, ReplayConsumer consumer) throws IOException {
+        if (!Files.exists(path)) return 0;
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Um CPF tem no máximo 37 bits: o início de um registro antigo nunca coincide com o MAGIC
+            boolean legacy = !hasHeader(in);
+            int recordSize = legacy ? LEGACY_RECORD_SIZE : RECORD_SIZE;
+            long validLength = legacy ? 0 : HEADER_SIZE;
+            long size = in.size() - (in.size() - validLength) % recordSize;
+            while (validLength < size) {
+                long windowSize = Math.min(MAP_WINDOW_RECORDS * recordSize, size - validLength);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, validLength, windowSize);
+                while (window.remaining() >= recordSize) {
+                    int start = window.position();
+                    long cpf = window.getLong();
+                    long epochMillis = window.getLong();
+                    int option = window.getInt();
+                    long key = legacy ? 0 : window.getLong();
+                    int storedCrc = window.getInt();
+
+                    crc.reset();
+                    crc.update(window.duplicate().position(start).limit(start + recordSize - Integer.BYTES));
+                    if ((int) crc.getValue() != storedCrc) {
+                        return validLength;
+                    }
+                    consumer.accept(cpf, option, epochMillis, key);
+                    validLength += recordSize;
+                }
+            }
+            return validLength;
+        }
+    }
+
+    private static boolean hasHeader(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            return hasHeader(in);
+        }
+    }
+
+    private static boolean hasHeader(FileChannel in) throws IOException {
+        if (in.size() < HEADER_SIZE) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && in.read(header, header.position()) > 0) { }
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+        header.flip();
+        while (header.hasRemaining()) channel.write(header);
+        channel.force(true);
+    }
+
+    static Path segmentPath(Path basePath, long segment) {
+        return numberedPath(basePath, segment);
+    }
+
+    /**
+     * Arquivo numerado ao lado de {@code basePath} (segmentos e snapshots): {@code nome.000042}.
+     */
+    static Path numberedPath(Path basePath, long number) {
+        return basePath.resolveSibling(basePath.getFileName() + "." + String.format("%06d", number));
+    }
+
+    /**
+     * Números dos arquivos existentes no formato de {@link #numberedPath}, em ordem crescente.
+     */
+    static List<Long> listNumbered(Path basePath) throws IOException {
+        Path dir = basePath.toAbsolutePath().getParent();
+        String prefix = basePath.getFileName() + ".";
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                 .filter(name -> name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d+"))
+                 .forEach(name -> segments.add(Long.parseLong(name.substring(prefix.length()))));
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Agenda a gravação de um voto; o futuro completa quando ele estiver em disco.
+     */
+    CompletableFuture<Void> append(AuditEntry entry) {
+        return appendAll(List.of(entry));
+    }
+
+    /**
+     * Agenda vários votos juntos (lotes); um único futuro para todos.
+     */
+    CompletableFuture<Void> appendAll(List<AuditEntry> entries) {
+        return enqueue(new PendingWrite(entries));
+    }
+
+    /**
+     * Futuro que completa quando tudo que foi agendado antes dele estiver em disco
+     * (usado para responder a um reenvio só depois de o voto original estar gravado).
+     */
+    CompletableFuture<Void> barrier() {
+        return appendAll(Collections.emptyList());
+    }
+
+    /**
+     * Fecha o segmento atual e passa a gravar no próximo. Tudo que foi agendado antes
+     * fica nos segmentos anteriores. O futuro devolve o número do novo segmento.
+     */
+    CompletableFuture<Long> rotate() {
+        return enqueue(new PendingWrite(null)).thenApply(v -> segment);
+    }
+
+    /**
+     * Remove os segmentos anteriores a {@code segment}, já cobertos por um snapshot.
+     */
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (long s : listNumbered(basePath)) {
+            if (s < segment) Files.deleteIfExists(segmentPath(basePath, s));
+        }
+    }
+
+    /**
+     * Quem é avisado dos votos que acabaram de ficar duráveis (o ledger, ver {@link VoteLedger#markDurable}).
+     */
+    void setDurableListener(Consumer<List<AuditEntry>> listener) {
+        this.durableListener = listener;
+    }
+
+    long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    private synchronized CompletableFuture<Void> enqueue(PendingWrite write) {
+        // Sob o mesmo lock que close() usa para parar: nada entra na fila depois disso
+        if (failure != null || !running) {
+            write.future.completeExceptionally(failure != null ? failure : new IOException("Journal is closed."));
+            return write.future;
+        }
+        queue.add(write);
+        return write.future;
+    }
+
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_GROUP_RECORDS * RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        List<PendingWrite> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            // Parte do grupo já em disco (antes de uma rotação) e onde começa o resto no segmento atual
+            int done = 0;
+            long groupStart = -1;
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                collectGroup(group, first.size());
+
+                buffer.clear();
+                groupStart = channel.position();
+                for (int i = 0; i < group.size(); i++) {
+                    PendingWrite write = group.get(i);
+                    if (write.isRotation()) {
+                        flush(buffer);
+                        nextSegment();
+                        // O segmento anterior foi fechado com fsync: o que veio antes da rotação já vale
+                        complete(group.subList(done, i + 1));
+                        done = i + 1;
+                        groupStart = channel.position();
+                        continue;
+                    }
+                    for (AuditEntry entry : write.entries) {
+                        if (!buffer.hasRemaining()) flush(buffer);
+                        putRecord(buffer, crc, entry);
+                    }
+                }
+                flush(buffer);
+                channel.force(false);
+                complete(group.subList(done, group.size()));
+            } catch (IOException e) {
+                System.err.println("Journal write failed: " + e.getMessage());
+                for (PendingWrite write : group.subList(done, group.size())) write.future.completeExceptionally(e);
+                failPending(e);
+                if (groupStart >= 0) discardFailedGroup(groupStart);
+            } catch (InterruptedException e) {
+                // Interrompido por close(): o que já saiu da fila também precisa de resposta
+                IOException closed = new IOException("Journal is closed.");
+                for (PendingWrite write : group.subList(done, group.size())) write.future.completeExceptionally(closed);
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        failPending(new IOException("Journal is closed."));
+    }
+
+    /**
+     * Gravações em disco: avisa o ledger e completa os futuros.
+     */
+    private void complete(List<PendingWrite> writes) {
+        Consumer<List<AuditEntry>> listener = durableListener;
+        long records = 0;
+        for (PendingWrite write : writes) {
+            if (write.size() > 0) listener.accept(write.entries);
+            records += write.size();
+        }
+        recordsWritten += records;
+        for (PendingWrite write : writes) write.future.complete(null);
+    }
+
+    /**
+     * Tira do arquivo os registros de um grupo que falhou, que podem ter sido escritos
+     * antes do fsync falhar. Sem isso, votos respondidos com "ERROR" voltariam no replay.
+     */
+    private void discardFailedGroup(long groupStart) {
+        try {
+            channel.truncate(groupStart);
+            channel.position(groupStart);
+            channel.force(true);
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Journal stopped: could not discard the failed group (" + e.getMessage()
+                    + "); new votes are refused until the server restarts.");
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        channel = FileChannel.open(segmentPath(basePath, segment + 1),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        writeHeader(channel);
+        segment++;
+    }
+
+    private void failPending(IOException cause) {
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            write.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Junta mais registros ao grupo até encher ou até estourar o orçamento de latência.
+     */
+    private void collectGroup(List<PendingWrite> group, int records) throws InterruptedException {
+        long deadline = System.nanoTime() + commitLatencyNanos;
+        while (records < MAX_GROUP_RECORDS) {
+            PendingWrite next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return;
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) return;
+            }
+            group.add(next);
+            records += next.size();
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, CRC32 crc, AuditEntry entry) {
+        int start = buffer.position();
+        buffer.putLong(entry.getCpfNumber());
+        buffer.putLong(entry.getEpochMillis());
+        buffer.putInt(entry.getOption());
+        buffer.putLong(entry.getIdempotencyKey());
+        crc.reset();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Espera os registros pendentes serem gravados e fecha o arquivo.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            running = false;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            if (writer.isAlive()) {
+                // Disco travado: interromper aborta a gravação e falha o grupo, em vez de fechar
+                // o arquivo por baixo de um writer que ainda pode gravar nele
+                System.err.println("Journal writer still busy after 5 s; aborting pending writes.");
+                writer.interrupt();
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IOException("Journal is closed."));
+        channel.close();
+    }
+
+    /**
+     * Votos aguardando gravação, ou um pedido de rotação de segmento (entries == null).
+     */
+    private static final class PendingWrite {
+        final List<AuditEntry> entries;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(List<AuditEntry> entries) {
+            this.entries = entries;
+        }
+
+        boolean isRotation() {
+            return entries == null;
+        }
+
+        int size() {
+            return entries == null ? 0 : entries.size();
+        }
+    }
+}
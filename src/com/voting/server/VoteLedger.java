@@ -0,0 +1,325 @@
+package com.voting.server;
+
+import com.voting.common.Cpf;
+import com.voting.common.Vote;
+import com.voting.common.VoteStatus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro concorrente dos votos: quem já votou e a contagem por opção.
+ *
+ * Não existe lock global. O CPF é reservado com {@code putIfAbsent}, que é atômico,
+ * então só uma thread vence para cada CPF; apenas a vencedora incrementa o contador
+ * da opção, exatamente uma vez. Assim, quando não há votos em andamento,
+ * a soma dos contadores é sempre igual ao número de CPFs registrados.
+ *
+ * Votos com chave de idempotência guardam a chave num segundo índice. Um reenvio
+ * (mesmo CPF, mesma chave) recebe "CPF já votou" do ledger, e o servidor consulta
+ * {@link #isReplay} para devolver ao terminal o "SUCCESS" original.
+ */
+class VoteLedger {
+    // Bits do valor guardado no índice reservados para a opção; o resto é o instante do voto
+    private static final int OPTION_BITS = 16;
+    private static final long OPTION_MASK = (1L << OPTION_BITS) - 1;
+    // Bit do valor que marca um voto reservado cujo registro ainda não está no journal.
+    // O instante em milissegundos deslocado 16 bits não chega perto dele
+    private static final long NOT_DURABLE = 1L << 62;
+
+    // As opções são fixas: posição na cédula -> contador
+    private final List<String> options;
+    private final LongAdder[] voteCounts;
+
+    // Só para os terminais antigos, que mandam o texto da opção em vez da posição
+    private final Map<String, Integer> optionIndex = new HashMap<>();
+
+    // CPF (long) -> instante e opção empacotados: cada CPF vota uma única vez
+    private final CpfVoteIndex votedCPFs = new CpfVoteIndex();
+
+    // CPF -> chave de idempotência do voto aceito; só votos que trouxeram chave ocupam espaço aqui
+    private final CpfVoteIndex idempotencyKeys = new CpfVoteIndex();
+
+    // Votos já gravados ainda não entregues à auditoria da GUI, na ordem em que ficaram duráveis
+    private final Queue<AuditEntry> pendingAudit = new ConcurrentLinkedQueue<>();
+
+    // Sem ninguém exibindo a auditoria (servidor headless), os votos não passam pela fila
+    private volatile boolean auditFeed = true;
+
+    // Ligado quando a eleição tem journal: os votos novos nascem marcados como não duráveis
+    // e o writer do journal tira a marca (ver markDurable)
+    private volatile boolean trackDurability;
+
+    VoteLedger(List<String> options) {
+        this.options = new ArrayList<>(options);
+        this.voteCounts = new LongAdder[options.size()];
+        for (int i = 0; i < options.size(); i++) {
+            optionIndex.put(options.get(i), i);
+            voteCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra o voto e devolve a entrada de auditoria gravada.
+     *
+     * @throws VoteRejectedException se o CPF é inválido ou já votou, ou se a opção não existe
+     */
+    AuditEntry register(Vote vote) {
+        // CPF (com dígitos verificadores) e opção são validados antes de reservar o CPF,
+        // para um voto inválido não "gastar" o CPF nem tocar nos contadores
+        long cpf = vote.getCpfNumber();
+        if (cpf == Cpf.INVALID) throw new VoteRejectedException(VoteStatus.INVALID_CPF);
+        int option = optionOf(vote);
+        if (option < 0) throw new VoteRejectedException(VoteStatus.INVALID_OPTION);
+
+        AuditEntry entry = new AuditEntry(cpf, option, System.currentTimeMillis(), keyOf(vote));
+        if (!claim(entry)) {
+            throw new VoteRejectedException(VoteStatus.ALREADY_VOTED);
+        }
+        voteCounts[option].increment();
+        return entry;
+    }
+
+    /**
+     * Registra um lote inteiro e devolve um status por voto, na ordem do lote.
+     * Cada CPF continua sendo reservado individualmente, mas o instante é lido
+     * uma vez e os contadores recebem um único {@code add} por opção no fim do lote.
+     * As entradas aceitas são acrescentadas em {@code accepted}.
+     */
+    VoteStatus[] registerBatch(List<Vote> votes, List<AuditEntry> accepted) {
+        VoteStatus[] statuses = new VoteStatus[votes.size()];
+        long[] acceptedPerOption = new long[voteCounts.length];
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < statuses.length; i++) {
+            Vote vote = votes.get(i);
+            long cpf = vote.getCpfNumber();
+            int option = optionOf(vote);
+            if (cpf == Cpf.INVALID) {
+                statuses[i] = VoteStatus.INVALID_CPF;
+            } else if (option < 0) {
+                statuses[i] = VoteStatus.INVALID_OPTION;
+            } else {
+                AuditEntry entry = new AuditEntry(cpf, option, now, keyOf(vote));
+                if (claim(entry)) {
+                    acceptedPerOption[option]++;
+                    accepted.add(entry);
+                    statuses[i] = VoteStatus.SUCCESS;
+                } else {
+                    statuses[i] = VoteStatus.ALREADY_VOTED;
+                }
+            }
+        }
+        for (int option = 0; option < acceptedPerOption.length; option++) {
+            if (acceptedPerOption[option] > 0) voteCounts[option].add(acceptedPerOption[option]);
+        }
+        return statuses;
+    }
+
+    /**
+     * Reaplica um voto já aceito antes (recuperação do journal).
+     * Não passa pela auditoria da GUI para não despejar milhões de linhas na tela.
+     */
+    void restore(long cpf, int option, long epochMillis) {
+        restore(cpf, option, epochMillis, 0);
+    }
+
+    /**
+     * @return false se o CPF já tinha voto (ou a opção é inválida) e nada mudou
+     */
+    boolean restore(long cpf, int option, long epochMillis, long idempotencyKey) {
+        if (option < 0 || option >= voteCounts.length) return false;
+        if (!votedCPFs.putIfAbsent(cpf, pack(epochMillis, option))) return false;
+        voteCounts[option].increment();
+        restoreIdempotencyKey(cpf, idempotencyKey);
+        return true;
+    }
+
+    /**
+     * Reaplica só a chave de um voto já restaurado (seção de chaves do snapshot);
+     * chave de CPF sem voto é ignorada.
+     */
+    void restoreIdempotencyKey(long cpf, long idempotencyKey) {
+        if (isKey(idempotencyKey) && votedCPFs.get(cpf) != CpfVoteIndex.NO_VALUE) {
+            idempotencyKeys.putIfAbsent(cpf, idempotencyKey);
+        }
+    }
+
+    /**
+     * Publica as chaves dos votos aceitos. O servidor chama isto depois de agendar a
+     * gravação deles no journal: quem encontrar a chave e esperar o journal sabe que
+     * o voto original já está em disco.
+     */
+    void rememberIdempotencyKeys(List<AuditEntry> entries) {
+        for (AuditEntry entry : entries) {
+            restoreIdempotencyKey(entry.getCpfNumber(), entry.getIdempotencyKey());
+        }
+    }
+
+    /**
+     * True se o CPF já votou com esta mesma chave, ou seja, o voto é um reenvio
+     * de um voto aceito e não uma segunda tentativa de votar.
+     */
+    boolean isReplay(Vote vote) {
+        long key = keyOf(vote);
+        if (key == 0) return false;
+        long cpf = vote.getCpfNumber();
+        return cpf != Cpf.INVALID && idempotencyKeys.get(cpf) == key;
+    }
+
+    /**
+     * Chave do voto do CPF, ou 0 se o voto não tem chave.
+     */
+    long idempotencyKey(long cpf) {
+        long key = idempotencyKeys.get(cpf);
+        return key == CpfVoteIndex.NO_VALUE ? 0 : key;
+    }
+
+    /**
+     * Desfaz um voto aceito em memória que não pôde ser gravado no journal,
+     * para o CPF poder votar de novo quando o disco voltar.
+     */
+    void revoke(AuditEntry entry) {
+        long value = pack(entry.getEpochMillis(), entry.getOption());
+        if (votedCPFs.remove(entry.getCpfNumber(), value | NOT_DURABLE) || votedCPFs.remove(entry.getCpfNumber(), value)) {
+            voteCounts[entry.getOption()].decrement();
+            if (isKey(entry.getIdempotencyKey())) idempotencyKeys.remove(entry.getCpfNumber(), entry.getIdempotencyKey());
+        }
+    }
+
+    // 0 é "sem chave" e Long.MIN_VALUE é o "ausente" do índice; nenhum dos dois identifica um voto
+    private static boolean isKey(long key) {
+        return key != 0 && key != CpfVoteIndex.NO_VALUE;
+    }
+
+    private static long keyOf(Vote vote) {
+        long key = vote.getIdempotencyKey();
+        return isKey(key) ? key : 0;
+    }
+
+    /**
+     * Posição da opção na cédula, ou -1 se ela não existe.
+     */
+    private int optionOf(Vote vote) {
+        int ordinal = vote.getOptionIndex();
+        if (ordinal >= 0) return ordinal < voteCounts.length ? ordinal : -1;
+        Integer option = optionIndex.get(vote.getChosenOption());
+        return option == null ? -1 : option;
+    }
+
+    private boolean claim(AuditEntry entry) {
+        long value = pack(entry.getEpochMillis(), entry.getOption());
+        return votedCPFs.putIfAbsent(entry.getCpfNumber(), trackDurability ? value | NOT_DURABLE : value);
+    }
+
+    /**
+     * Passa a marcar os votos novos como não duráveis até {@link #markDurable}; chamado
+     * quando a eleição abre o journal, antes de aceitar votos.
+     */
+    void trackDurability() {
+        trackDurability = true;
+    }
+
+    /**
+     * Tira a marca de "não durável" dos votos já gravados. O writer do journal chama isto
+     * depois do fsync e antes de completar os futuros, então quando uma rotação de segmento
+     * termina, todo voto dos segmentos anteriores já está desmarcado.
+     */
+    void markDurable(List<AuditEntry> entries) {
+        for (AuditEntry entry : entries) {
+            long value = pack(entry.getEpochMillis(), entry.getOption());
+            votedCPFs.replace(entry.getCpfNumber(), value | NOT_DURABLE, value);
+        }
+    }
+
+    private static long pack(long epochMillis, int option) {
+        return (epochMillis << OPTION_BITS) | option;
+    }
+
+    /**
+     * Cópia da contagem atual, na ordem das opções da cédula.
+     */
+    Map<String, Long> snapshotCounts() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < options.size(); i++) {
+            snapshot.put(options.get(i), voteCounts[i].sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Contagem atual por ordinal da opção.
+     */
+    long[] counts() {
+        long[] counts = new long[voteCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = voteCounts[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Liga ou desliga a fila de auditoria; ao desligar, o que estava pendente é descartado.
+     */
+    void setAuditFeed(boolean enabled) {
+        auditFeed = enabled;
+        if (!enabled) pendingAudit.clear();
+    }
+
+    /**
+     * Entrega à auditoria da GUI e do monitor votos que já estão no journal. O servidor chama
+     * isto depois do fsync: um voto desfeito por {@link #revoke} (e respondido com "ERROR")
+     * nunca chega a aparecer.
+     */
+    void publishAudit(List<AuditEntry> entries) {
+        if (auditFeed) pendingAudit.addAll(entries);
+    }
+
+    /**
+     * Retira as entradas de auditoria publicadas desde a última chamada.
+     */
+    List<AuditEntry> drainNewAuditEntries() {
+        List<AuditEntry> entries = new ArrayList<>();
+        AuditEntry entry;
+        while ((entry = pendingAudit.poll()) != null) {
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Percorre os votos aceitos sem bloquear o ledger inteiro (um segmento do índice por vez).
+     */
+    void forEachVote(VoteJournal.RecordConsumer action) {
+        votedCPFs.forEach((cpf, value) -> action.accept(cpf, (int) (value & OPTION_MASK), (value & ~NOT_DURABLE) >>> OPTION_BITS));
+    }
+
+    /**
+     * Como {@link #forEachVote}, mas só os votos que já estão no journal (para os snapshots):
+     * um voto ainda marcado pode ser desfeito se a gravação falhar.
+     */
+    void forEachDurableVote(VoteJournal.RecordConsumer action) {
+        votedCPFs.forEach((cpf, value) -> {
+            if ((value & NOT_DURABLE) == 0) action.accept(cpf, (int) (value & OPTION_MASK), value >>> OPTION_BITS);
+        });
+    }
+
+    /**
+     * Percorre as chaves de idempotência (CPF, chave), um segmento do índice por vez.
+     */
+    void forEachIdempotencyKey(CpfVoteIndex.EntryConsumer action) {
+        idempotencyKeys.forEach(action);
+    }
+
+    int totalVotes() {
+        return votedCPFs.size();
+    }
+
+    /**
+     * Bytes ocupados pelo índice de CPFs (para acompanhar o custo por eleitor).
+     */
+    long indexMemoryBytes() {
+        return votedCPFs.memoryBytes() + idempotencyKeys.memoryBytes();
+    }
+}
@@ -0,0 +1,21 @@
+package com.voting.server;
+
+import com.voting.common.VoteStatus;
+
+/**
+ * Voto recusado pelas regras da eleição; o status vai direto para a resposta ao terminal.
+ */
+class VoteRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final VoteStatus status;
+
+    VoteRejectedException(VoteStatus status) {
+        super(status.getMessage(), null, false, false);
+        this.status = status;
+    }
+
+    VoteStatus getStatus() {
+        return status;
+    }
+}